@@ -0,0 +1,84 @@
+package spelling;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JTextPane;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what typing costs the incremental checker: a space is typed after
+ * a word and deleted again, moving the caret as typing would, and the words
+ * touched are rechecked after each edit as they are once the user stops
+ * typing. The space goes through the scan back from the caret, and the
+ * deletion through the range check that holds the word at the caret. The caret is near the start,
+ * middle and end of documents of different sizes, and the time should depend
+ * on neither the size of the document nor where the caret is. The scheduled
+ * recheck is put off for good so it never runs alongside the benchmark's own.
+ *
+ * @author Inderpreet
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Djava.awt.headless=true",
+		"-Ddragyn.checkDelay=86400000", "-Ddragyn.checkMaxDelay=86400000" })
+public class CheckEditsBenchmark {
+
+	/**
+	 * The length of the document in characters
+	 */
+	@Param({ "65536", "1048576", "5242880" })
+	public int documentLength;
+
+	/**
+	 * Where the caret is, as a share of the document length
+	 */
+	@Param({ "0.001", "0.5", "1.0" })
+	public double caretPosition;
+
+	private Document document;
+	private JTextPane textPane;
+	private IncrementalSpellChecker checker;
+	private int caret;
+
+	@Setup
+	public void setUp() throws Exception {
+		String text = SyntheticText.generate(new Dictionary(
+				Dictionary.DEFAULT_NAME), documentLength, 42);
+		EditorFixture fixture = new EditorFixture(text);
+		document = fixture.getTextField().getDefaultDocument();
+		textPane = fixture.getTextField().getTextPane();
+		checker = fixture.getSpellChecker().getIncrementalChecker();
+		caret = (int) Math.min(text.length(), text.length() * caretPosition);
+		// Put the caret just after a word, as if space had been pressed
+		while (caret > 0
+				&& WordTokenizer.classify(text.charAt(caret - 1)) == WordTokenizer.SEPARATOR) {
+			caret--;
+		}
+	}
+
+	@Benchmark
+	public void typeSpace() throws BadLocationException {
+		document.insertString(caret, " ", null);
+		textPane.setCaretPosition(caret + 1);
+		checker.flush();
+		document.remove(caret, 1);
+		textPane.setCaretPosition(caret);
+		checker.flush();
+	}
+}
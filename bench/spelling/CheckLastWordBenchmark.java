@@ -0,0 +1,64 @@
+package spelling;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long checking the word before the caret takes, with the caret
+ * near the start, middle and end of documents of different sizes. The time
+ * should depend on neither the size of the document nor where the caret is.
+ *
+ * @author Inderpreet
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CheckLastWordBenchmark {
+
+	/**
+	 * The length of the document in characters
+	 */
+	@Param({ "65536", "1048576", "5242880" })
+	public int documentLength;
+
+	/**
+	 * Where the caret is, as a share of the document length
+	 */
+	@Param({ "0.001", "0.5", "1.0" })
+	public double caretPosition;
+
+	private EditorFixture fixture;
+	private int caret;
+
+	@Setup
+	public void setUp() throws Exception {
+		String text = SyntheticText.generate(new Dictionary(
+				Dictionary.DEFAULT_NAME), documentLength, 42);
+		fixture = new EditorFixture(text);
+		caret = (int) Math.min(text.length(), text.length() * caretPosition);
+		// Put the caret just after a word, as if space had been pressed
+		while (caret > 0
+				&& WordTokenizer.classify(text.charAt(caret - 1)) == WordTokenizer.SEPARATOR) {
+			caret--;
+		}
+	}
+
+	@Benchmark
+	public void checkLastWord() {
+		fixture.getSpellChecker().checkLastWord(caret);
+	}
+}
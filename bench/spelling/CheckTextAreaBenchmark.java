@@ -0,0 +1,54 @@
+package spelling;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full check of the text area, from starting the background
+ * check until every word is marked, on documents of 10 KB, 1 MB and 10 MB
+ *
+ * @author Inderpreet
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CheckTextAreaBenchmark {
+
+	@Param({ "10240", "1048576", "10485760" })
+	public int documentLength;
+
+	private EditorFixture fixture;
+
+	@Setup
+	public void setUp() throws Exception {
+		fixture = new EditorFixture(SyntheticText.generate(new Dictionary(
+				Dictionary.DEFAULT_NAME), documentLength, 42));
+	}
+
+	@Benchmark
+	public int checkTextArea() throws Exception {
+		SpellChecker spellChecker = fixture.getSpellChecker();
+		CountDownLatch done = new CountDownLatch(1);
+		SwingUtilities.invokeAndWait(() -> spellChecker
+				.checkTextArea(done::countDown));
+		done.await();
+		return spellChecker.getErrorsFound();
+	}
+}
@@ -0,0 +1,148 @@
+package spelling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long a dictionary takes to load, both from the compiled file
+ * and from the word list. Each load also reports how much heap it keeps and
+ * how much of the file it maps, as the retainedBytes and mappedBytes
+ * counters.
+ *
+ * @author Inderpreet
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(3)
+public class DictionaryBenchmark {
+
+	/**
+	 * Holds on to what an iteration loaded and measures how much memory it
+	 * takes once the iteration is over
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+
+		public long retainedBytes;
+		public long mappedBytes;
+		private long heapBefore;
+		private long mappedBefore;
+		private Object loaded;
+
+		@Setup(Level.Iteration)
+		public void measureBefore() {
+			loaded = null;
+			collectGarbage();
+			heapBefore = getHeapUsed();
+			mappedBefore = getMappedUsed();
+		}
+
+		@TearDown(Level.Iteration)
+		public void measureAfter() {
+			collectGarbage();
+			retainedBytes = getHeapUsed() - heapBefore;
+			mappedBytes = getMappedUsed() - mappedBefore;
+			loaded = null;
+		}
+
+		/**
+		 * Keeps what was loaded until it has been measured
+		 *
+		 * @param loaded
+		 *            What the iteration loaded
+		 * @return The same object
+		 */
+		<T> T keep(T loaded) {
+			this.loaded = loaded;
+			return loaded;
+		}
+	}
+
+	@Setup
+	public void compileOnce() {
+		// Make sure the compiled dictionary is in the cache directory
+		new Dictionary(Dictionary.DEFAULT_NAME);
+	}
+
+	@Benchmark
+	public Dictionary loadCompiled(Footprint footprint) {
+		return footprint.keep(new Dictionary(Dictionary.DEFAULT_NAME));
+	}
+
+	@Benchmark
+	public Dictionary compileWordList(Footprint footprint) throws IOException {
+		try (InputStream inputStream = Dictionary.class
+				.getResourceAsStream(Dictionary.DEFAULT_NAME + ".txt")) {
+			ByteBuffer buffer = DictionaryCompiler.compile(inputStream);
+			return footprint.keep(new Dictionary(buffer));
+		}
+	}
+
+	@Benchmark
+	public SuggestionEngine openSuggestionEngine(Footprint footprint) {
+		return footprint.keep(SuggestionEngine.open(new Dictionary(
+				Dictionary.DEFAULT_NAME), Dictionary.DEFAULT_NAME));
+	}
+
+	/**
+	 * Collects garbage until unreachable buffers have had time to be unmapped
+	 */
+	private static void collectGarbage() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gets how much of the heap is in use
+	 *
+	 * @return The size in bytes
+	 */
+	private static long getHeapUsed() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+				.getUsed();
+	}
+
+	/**
+	 * Gets how much memory the mapped buffers of the virtual machine take
+	 *
+	 * @return The size in bytes
+	 */
+	private static long getMappedUsed() {
+		for (BufferPoolMXBean pool : ManagementFactory
+				.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("mapped")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,109 @@
+package spelling;
+
+import gui.TextField;
+
+import java.awt.Color;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Sets up a spell checker on a text field without showing a window, for the
+ * benchmarks that go through the editor
+ *
+ * @author Inderpreet
+ */
+public class EditorFixture {
+
+	private static final long LOAD_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+	private TextField textField;
+	private SpellChecker spellChecker;
+
+	/**
+	 * Creates a text field holding a document and waits for its spell checker
+	 * to load the dictionary
+	 *
+	 * @param text
+	 *            The document
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 * @throws InvocationTargetException
+	 *             If the text field could not be created
+	 */
+	public EditorFixture(String text) throws InterruptedException,
+			InvocationTargetException {
+		SwingUtilities.invokeAndWait(() -> {
+			textField = new TextField(Color.BLACK, Color.RED);
+			spellChecker = new SpellChecker(textField);
+		});
+		long deadline = System.currentTimeMillis() + LOAD_TIMEOUT;
+		while (!isReady()) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Dictionary did not load");
+			}
+			Thread.sleep(10);
+		}
+		SwingUtilities.invokeAndWait(() -> {
+			spellChecker.cancelCheck();
+			textField.getTextPane().setText(text);
+		});
+		waitForChecks();
+	}
+
+	/**
+	 * Waits until the checks started by changing the text have finished
+	 *
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 * @throws InvocationTargetException
+	 *             If a check failed
+	 */
+	public void waitForChecks() throws InterruptedException,
+			InvocationTargetException {
+		boolean[] checking = new boolean[1];
+		do {
+			Thread.sleep(10);
+			SwingUtilities.invokeAndWait(() -> {
+				// Run the edits' recheck rather than wait for it
+				spellChecker.getIncrementalChecker().flush();
+				checking[0] = spellChecker.isChecking();
+			});
+		} while (checking[0]);
+	}
+
+	/**
+	 * Returns true once the spell checker has its dictionary
+	 *
+	 * @return Whether the dictionary has loaded
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 * @throws InvocationTargetException
+	 *             If the check failed
+	 */
+	private boolean isReady() throws InterruptedException,
+			InvocationTargetException {
+		boolean[] ready = new boolean[1];
+		SwingUtilities.invokeAndWait(() -> ready[0] = spellChecker.isReady());
+		return ready[0];
+	}
+
+	/**
+	 * Gets the text field
+	 *
+	 * @return The text field
+	 */
+	public TextField getTextField() {
+		return textField;
+	}
+
+	/**
+	 * Gets the spell checker
+	 *
+	 * @return The spell checker
+	 */
+	public SpellChecker getSpellChecker() {
+		return spellChecker;
+	}
+}
@@ -0,0 +1,67 @@
+package spelling;
+
+import java.util.Random;
+
+/**
+ * Builds repeatable documents for the benchmarks out of dictionary words,
+ * with some words misspelled and some punctuation mixed in
+ *
+ * @author Inderpreet
+ */
+public class SyntheticText {
+
+	private static final double MISSPELLED_RATE = 0.05;
+	private static final String PUNCTUATION = ".,;:!?";
+
+	/**
+	 * Creates a document
+	 *
+	 * @param dictionary
+	 *            The dictionary to take words from
+	 * @param length
+	 *            The length of the document in characters
+	 * @param seed
+	 *            The seed, so the same document can be built again
+	 * @return The document
+	 */
+	public static String generate(Dictionary dictionary, int length, long seed) {
+		Random random = new Random(seed);
+		StringBuilder builder = new StringBuilder(length + 32);
+		int wordsInLine = 0;
+		while (builder.length() < length) {
+			String word = dictionary.getWord(random.nextInt(dictionary.size()));
+			if (random.nextDouble() < MISSPELLED_RATE) {
+				word = misspell(word, random);
+			}
+			builder.append(word);
+			if (random.nextInt(8) == 0) {
+				builder.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION
+						.length())));
+			}
+			builder.append(++wordsInLine % 12 == 0 ? '\n' : ' ');
+		}
+		builder.setLength(length);
+		return builder.toString();
+	}
+
+	/**
+	 * Swaps two letters of a word, or doubles the letter of a short one
+	 *
+	 * @param word
+	 *            The word
+	 * @param random
+	 *            The source of randomness
+	 * @return The misspelled word
+	 */
+	private static String misspell(String word, Random random) {
+		if (word.length() < 2) {
+			return word + word;
+		}
+		char[] letters = word.toCharArray();
+		int i = random.nextInt(letters.length - 1);
+		char c = letters[i];
+		letters[i] = letters[i + 1];
+		letters[i + 1] = c;
+		return new String(letters) + "q";
+	}
+}
@@ -0,0 +1,83 @@
+package spelling;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how many words a second can be looked up, with and without the
+ * verdict cache and the Bloom filter
+ *
+ * @author Inderpreet
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class WordBenchmark {
+
+	private static final int WORDS = 4096;
+
+	@Param({ "0", "4096" })
+	public int cacheSize;
+
+	@Param({ "0", "0.01" })
+	public double bloomFilterRate;
+
+	private Dictionary dictionary;
+	private VerdictCache cache;
+	private String text;
+	private int[] starts;
+	private int[] ends;
+
+	@Setup
+	public void setUp() {
+		dictionary = new Dictionary(Dictionary.DEFAULT_NAME);
+		if (bloomFilterRate > 0) {
+			dictionary.enableBloomFilter(bloomFilterRate);
+		}
+		cache = cacheSize > 0 ? new VerdictCache(cacheSize, 4,
+				VerdictCache.Eviction.LRU) : null;
+		text = SyntheticText.generate(dictionary, 64 * 1024, 42);
+		starts = new int[WORDS];
+		ends = new int[WORDS];
+		WordTokenizer tokenizer = new WordTokenizer().reset(text, 0,
+				text.length());
+		for (int i = 0; i < WORDS && tokenizer.next(); i++) {
+			starts[i] = tokenizer.getStart();
+			ends[i] = tokenizer.getEnd();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(WORDS)
+	public void isWord(Blackhole blackhole) {
+		for (int i = 0; i < WORDS; i++) {
+			blackhole.consume(Word.isWord(dictionary, cache, text, starts[i],
+					ends[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(WORDS)
+	public void isWordFromString(Blackhole blackhole) {
+		for (int i = 0; i < WORDS; i++) {
+			blackhole.consume(new Word(text.substring(starts[i], ends[i]))
+					.isWord(dictionary));
+		}
+	}
+}
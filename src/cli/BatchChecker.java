@@ -0,0 +1,323 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import file.CacheDirectory;
+import spelling.Dictionary;
+import spelling.UserDictionary;
+import spelling.VerdictCache;
+import spelling.WordTokenizer;
+
+/**
+ * Checks the spelling of files and directory trees without starting the
+ * editor, for use in scripts and continuous integration. Files are read a
+ * line at a time and checked in parallel, and the misspelled words are
+ * written as JSON or CSV in the order the files were given. Exits with 1 if
+ * any word is misspelled and 2 if the files or the dictionary could not be
+ * read. Only the report goes to standard output, and the dictionary cache is
+ * kept in the temporary directory rather than the working directory.
+ *
+ * <pre>
+ * java -cp DragynTextEdit.jar cli.BatchChecker [options] paths...
+ *   --format json|csv     Report format, json by default
+ *   --output file         Where to write the report, standard output by default
+ *   --dictionary name     The dictionary to check against
+ *   --words file          Extra words to accept, one per line
+ *   --extensions txt,md   Extensions of the files checked inside directories
+ *   --charset name        Encoding of the files, UTF-8 by default
+ *   --threads n           Number of files checked at once
+ * </pre>
+ *
+ * @author Inderpreet
+ */
+public class BatchChecker {
+
+	private static final int CACHE_SIZE = 1 << 16;
+
+	private final Dictionary dictionary;
+	private final VerdictCache cache = new VerdictCache(CACHE_SIZE, 4,
+			VerdictCache.Eviction.FIFO);
+	private final Charset charset;
+	private final LongAdder words = new LongAdder();
+	private final LongAdder characters = new LongAdder();
+
+	/**
+	 * A misspelled word and where it was found
+	 */
+	static class Misspelling {
+
+		private final int line;
+		private final int column;
+		private final String word;
+
+		Misspelling(int line, int column, String word) {
+			this.line = line;
+			this.column = column;
+			this.word = word;
+		}
+	}
+
+	/**
+	 * Creates a checker
+	 *
+	 * @param dictionary
+	 *            The dictionary to check against
+	 * @param charset
+	 *            The encoding of the files
+	 */
+	public BatchChecker(Dictionary dictionary, Charset charset) {
+		this.dictionary = dictionary;
+		this.charset = charset;
+	}
+
+	public static void main(String[] args) {
+		String format = "json";
+		String output = null;
+		String dictionaryName = Dictionary.DEFAULT_NAME;
+		String wordsFile = null;
+		HashSet<String> extensions = new HashSet<String>(Arrays.asList("txt"));
+		Charset charset = StandardCharsets.UTF_8;
+		int threads = Runtime.getRuntime().availableProcessors();
+		ArrayList<Path> paths = new ArrayList<Path>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "--format":
+					format = args[++i].toLowerCase(Locale.ROOT);
+					break;
+				case "--output":
+					output = args[++i];
+					break;
+				case "--dictionary":
+					dictionaryName = args[++i];
+					break;
+				case "--words":
+					wordsFile = args[++i];
+					break;
+				case "--extensions":
+					extensions = new HashSet<String>(Arrays.asList(args[++i]
+							.toLowerCase(Locale.ROOT).split(",")));
+					break;
+				case "--charset":
+					charset = Charset.forName(args[++i]);
+					break;
+				case "--threads":
+					threads = Math.max(1, Integer.parseInt(args[++i]));
+					break;
+				default:
+					paths.add(new File(args[i]).toPath());
+					break;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex) {
+			paths.clear();
+		}
+		if (paths.isEmpty() || !format.equals("json") && !format.equals("csv")) {
+			System.err.println("Usage: BatchChecker [--format json|csv]"
+					+ " [--output file] [--dictionary name] [--words file]"
+					+ " [--extensions txt,md] [--charset name] [--threads n]"
+					+ " paths...");
+			System.exit(2);
+		}
+
+		// Keep the editor's messages out of the report
+		PrintStream standardOutput = System.out;
+		System.setOut(System.err);
+		CacheDirectory.setDefaultDirectory(new File(System
+				.getProperty("java.io.tmpdir"), CacheDirectory.DIRECTORY));
+
+		Dictionary dictionary;
+		try {
+			dictionary = Dictionary.load(dictionaryName);
+		} catch (IOException ioe) {
+			System.err.println("Could not load dictionary: " + ioe.getMessage());
+			System.exit(2);
+			return;
+		}
+		if (wordsFile != null) {
+			dictionary.setUserDictionary(UserDictionary.readOnly(new File(
+					wordsFile)));
+		}
+		BatchChecker checker = new BatchChecker(dictionary, charset);
+		int misspellings;
+		try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+				output == null ? standardOutput : new FileOutputStream(output),
+				StandardCharsets.UTF_8))) {
+			List<Path> files = findFiles(paths, extensions);
+			Report report = format.equals("csv") ? new CsvReport(writer)
+					: new JsonReport(writer);
+			misspellings = checker.check(files, threads, report);
+		} catch (IOException ioe) {
+			System.err.println("Could not check files: " + ioe.getMessage());
+			System.exit(2);
+			return;
+		}
+		System.exit(misspellings > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Lists the files to check. Files named directly are always checked and
+	 * directories are searched for files with one of the extensions.
+	 *
+	 * @param paths
+	 *            The files and directories
+	 * @param extensions
+	 *            The extensions to look for in directories
+	 * @return The files in the order given, with each directory's files
+	 *         sorted
+	 * @throws IOException
+	 *             If a directory could not be read
+	 */
+	static List<Path> findFiles(List<Path> paths, HashSet<String> extensions)
+			throws IOException {
+		ArrayList<Path> files = new ArrayList<Path>();
+		for (Path path : paths) {
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> walk = Files.walk(path)) {
+					files.addAll(walk
+							.filter(Files::isRegularFile)
+							.filter(file -> extensions
+									.contains(extension(file)))
+							.sorted().collect(Collectors.toList()));
+				}
+			} else if (Files.isRegularFile(path)) {
+				files.add(path);
+			} else {
+				throw new IOException("No such file " + path);
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Checks files in parallel and writes their misspelled words in order
+	 *
+	 * @param files
+	 *            The files to check
+	 * @param threads
+	 *            The number of files to check at once
+	 * @param report
+	 *            Where to write the results
+	 * @return The number of misspelled words
+	 * @throws IOException
+	 *             If a file could not be read
+	 */
+	public int check(List<Path> files, int threads, Report report)
+			throws IOException {
+		long started = System.nanoTime();
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		int misspellings = 0;
+		try {
+			ArrayList<Future<List<Misspelling>>> results = new ArrayList<Future<List<Misspelling>>>();
+			for (Path file : files) {
+				results.add(workers.submit(() -> checkFile(file)));
+			}
+			report.begin();
+			for (int i = 0; i < files.size(); i++) {
+				List<Misspelling> found = results.get(i).get();
+				for (Misspelling misspelling : found) {
+					report.add(files.get(i).toString(), misspelling.line,
+							misspelling.column, misspelling.word);
+				}
+				misspellings += found.size();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted");
+		} catch (ExecutionException ee) {
+			throw new IOException(ee.getCause().getMessage(), ee.getCause());
+		} finally {
+			workers.shutdownNow();
+		}
+		double seconds = Math.max(System.nanoTime() - started, 1) / 1e9;
+		long wordCount = words.sum();
+		long characterCount = characters.sum();
+		report.end(files.size(), wordCount, misspellings, characterCount,
+				seconds);
+		System.err.println(String.format(Locale.ROOT,
+				"Checked %d files, %d words in %.2f s (%.0f words/s,"
+						+ " %.1f MB/s), %d misspelled", files.size(),
+				wordCount, seconds, wordCount / seconds, characterCount
+						/ seconds / 1e6, misspellings));
+		return misspellings;
+	}
+
+	/**
+	 * Checks one file a line at a time
+	 *
+	 * @param file
+	 *            The file
+	 * @return The misspelled words in the order they appear
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	List<Misspelling> checkFile(Path file) throws IOException {
+		ArrayList<Misspelling> misspellings = new ArrayList<Misspelling>();
+		WordTokenizer tokenizer = new WordTokenizer();
+		long wordCount = 0;
+		long characterCount = 0;
+		try (BufferedReader bufferedReader = Files.newBufferedReader(file,
+				charset)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = bufferedReader.readLine()) != null) {
+				lineNumber++;
+				characterCount += line.length() + 1;
+				tokenizer.reset(line, 0, line.length());
+				while (tokenizer.next()) {
+					wordCount++;
+					if (!tokenizer.isWord(dictionary, cache)) {
+						int start = tokenizer.getStart();
+						int end = tokenizer.getEnd();
+						while (WordTokenizer.classify(line.charAt(start)) != WordTokenizer.LETTER) {
+							start++;
+						}
+						while (WordTokenizer.classify(line.charAt(end - 1)) != WordTokenizer.LETTER) {
+							end--;
+						}
+						misspellings.add(new Misspelling(lineNumber, start + 1,
+								line.substring(start, end)));
+					}
+				}
+			}
+		}
+		words.add(wordCount);
+		characters.add(characterCount);
+		return misspellings;
+	}
+
+	/**
+	 * Gets the extension of a file in lowercase
+	 *
+	 * @param file
+	 *            The file
+	 * @return The extension, or an empty String if it has none
+	 */
+	private static String extension(Path file) {
+		String name = file.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+	}
+}
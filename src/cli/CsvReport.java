@@ -0,0 +1,55 @@
+package cli;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes one line per misspelled word with a header row. The throughput is
+ * only printed to standard error.
+ *
+ * @author Inderpreet
+ */
+public class CsvReport implements Report {
+
+	private final PrintWriter writer;
+
+	public CsvReport(PrintWriter writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void begin() {
+		writer.println("file,line,column,word");
+	}
+
+	@Override
+	public void add(String file, int line, int column, String word) {
+		writer.print(quote(file));
+		writer.print(',');
+		writer.print(line);
+		writer.print(',');
+		writer.print(column);
+		writer.print(',');
+		writer.println(quote(word));
+	}
+
+	@Override
+	public void end(int files, long words, int misspellings, long characters,
+			double seconds) {
+		writer.flush();
+	}
+
+	/**
+	 * Quotes a field if it holds a comma, quote or line break
+	 *
+	 * @param field
+	 *            The field
+	 * @return The field as written in the file
+	 */
+	private static String quote(String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0
+				&& field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+			return field;
+		}
+		return '"' + field.replace("\"", "\"\"") + '"';
+	}
+}
@@ -0,0 +1,94 @@
+package cli;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Writes a JSON object holding an array of misspelled words followed by the
+ * totals and throughput. The words are written as they are found rather
+ * than built up in memory.
+ *
+ * @author Inderpreet
+ */
+public class JsonReport implements Report {
+
+	private final PrintWriter writer;
+	private boolean first = true;
+
+	public JsonReport(PrintWriter writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void begin() {
+		writer.println("{");
+		writer.print("  \"misspellings\": [");
+	}
+
+	@Override
+	public void add(String file, int line, int column, String word) {
+		writer.println(first ? "" : ",");
+		first = false;
+		writer.print("    {\"file\": " + quote(file) + ", \"line\": " + line
+				+ ", \"column\": " + column + ", \"word\": " + quote(word)
+				+ "}");
+	}
+
+	@Override
+	public void end(int files, long words, int misspellings, long characters,
+			double seconds) {
+		writer.println(first ? "]," : "\n  ],");
+		writer.println("  \"files\": " + files + ",");
+		writer.println("  \"words\": " + words + ",");
+		writer.println("  \"misspelled\": " + misspellings + ",");
+		writer.println("  \"characters\": " + characters + ",");
+		writer.println(String.format(Locale.ROOT, "  \"seconds\": %.3f,",
+				seconds));
+		writer.println(String.format(Locale.ROOT,
+				"  \"wordsPerSecond\": %.0f,", words / seconds));
+		writer.println(String.format(Locale.ROOT,
+				"  \"charactersPerSecond\": %.0f", characters / seconds));
+		writer.println("}");
+		writer.flush();
+	}
+
+	/**
+	 * Writes a String as a JSON string
+	 *
+	 * @param text
+	 *            The String
+	 * @return The quoted and escaped String
+	 */
+	private static String quote(String text) {
+		StringBuilder builder = new StringBuilder(text.length() + 2);
+		builder.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					builder.append(String.format("\\u%04x", (int) c));
+				} else {
+					builder.append(c);
+				}
+				break;
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
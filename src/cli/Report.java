@@ -0,0 +1,45 @@
+package cli;
+
+/**
+ * Writes the results of a batch check
+ *
+ * @author Inderpreet
+ */
+public interface Report {
+
+	/**
+	 * Called before the first misspelled word
+	 */
+	void begin();
+
+	/**
+	 * Writes a misspelled word
+	 *
+	 * @param file
+	 *            The file it was found in
+	 * @param line
+	 *            The line number, starting at 1
+	 * @param column
+	 *            The column of its first letter, starting at 1
+	 * @param word
+	 *            The word
+	 */
+	void add(String file, int line, int column, String word);
+
+	/**
+	 * Called after the last misspelled word
+	 *
+	 * @param files
+	 *            The number of files checked
+	 * @param words
+	 *            The number of words checked
+	 * @param misspellings
+	 *            The number of misspelled words
+	 * @param characters
+	 *            The number of characters read
+	 * @param seconds
+	 *            How long the check took
+	 */
+	void end(int files, long words, int misspellings, long characters,
+			double seconds);
+}
@@ -0,0 +1,49 @@
+package file;
+
+import java.io.File;
+
+/**
+ * Locates files kept between runs that can be rebuilt if deleted
+ *
+ * @author Inderpreet
+ */
+public class CacheDirectory {
+
+	public static final String DIRECTORY = "DragynTextEdit.cache";
+
+	/**
+	 * Where the cache is kept, the working directory's DragynTextEdit.cache by
+	 * default. Set with -Ddragyn.cacheDir=path
+	 */
+	public static final String PROPERTY = "dragyn.cacheDir";
+
+	private static volatile File directory = new File(System.getProperty(
+			PROPERTY, DIRECTORY));
+
+	/**
+	 * Moves the cache, unless it was placed with -Ddragyn.cacheDir
+	 *
+	 * @param defaultDirectory
+	 *            The directory to use
+	 */
+	public static void setDefaultDirectory(File defaultDirectory) {
+		if (System.getProperty(PROPERTY) == null) {
+			directory = defaultDirectory;
+		}
+	}
+
+	/**
+	 * Gets a file inside the cache directory, creating the directory if needed
+	 *
+	 * @param name
+	 *            The name of the file
+	 * @return The file
+	 */
+	public static File getFile(String name) {
+		File directory = CacheDirectory.directory;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			System.out.println("Could not create cache directory");
+		}
+		return new File(directory, name);
+	}
+}
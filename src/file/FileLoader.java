@@ -6,6 +6,8 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 
+import metrics.EditorMetrics;
+
 public class FileLoader {
 
 	private File file;
@@ -35,12 +37,15 @@ public class FileLoader {
 	 * @return The read section
 	 */
 	public String readChunk(int length) {
+		long started = System.nanoTime();
 		try {
 			byte[] bytes = new byte[length];
 			fileInputStream.read(bytes, 0, bytes.length);
 			return new String(bytes);
 		} catch (IOException ioe) {
 			System.out.println(ioe.getMessage());
+		} finally {
+			EditorMetrics.READ_CHUNK.recordSince(started);
 		}
 		return "";
 	}
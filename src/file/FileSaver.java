@@ -5,6 +5,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
+import metrics.EditorMetrics;
+
 public class FileSaver {
 
 	private File startingFile;
@@ -20,6 +22,7 @@ public class FileSaver {
 	}
 
 	public void save(String text, int offset) {
+		long started = System.nanoTime();
 		try {
 			File tempFile = new File("temp");
 
@@ -70,6 +73,8 @@ public class FileSaver {
 			tempFile.deleteOnExit();
 		} catch (IOException ioe) {
 			System.out.println(ioe.getMessage());
+		} finally {
+			EditorMetrics.SAVE.recordSince(started);
 		}
 	}
 }
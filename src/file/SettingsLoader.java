@@ -9,6 +9,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 
+import metrics.EditorMetrics;
+
 public class SettingsLoader {
 
 	private int fontSize = 20, fontStyle = Font.PLAIN;
@@ -50,6 +52,7 @@ public class SettingsLoader {
 	 * Gets information back from a file
 	 */
 	public void loadSettings() {
+		long started = System.nanoTime();
 		try {
 			String line;
 			while ((line = bufferedReader.readLine()) != null) {
@@ -93,6 +96,8 @@ public class SettingsLoader {
 			}
 		} catch (Exception e) {
 			System.out.println("Could not load");
+		} finally {
+			EditorMetrics.LOAD_SETTINGS.recordSince(started);
 		}
 	}
 
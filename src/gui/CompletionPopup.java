@@ -0,0 +1,354 @@
+package gui;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JTextPane;
+import javax.swing.ListSelectionModel;
+import javax.swing.Popup;
+import javax.swing.PopupFactory;
+import javax.swing.SwingUtilities;
+import javax.swing.event.CaretEvent;
+import javax.swing.event.CaretListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+import spelling.Autocompleter;
+import spelling.DictionaryRegistry;
+import spelling.Span;
+import spelling.SpellChecker;
+import spelling.WordTokenizer;
+
+/**
+ * Offers completions for the word being typed in a list under the caret.
+ * Completions are looked up on a background thread, and a lookup whose
+ * result arrives after the user has typed again is thrown away. No
+ * completion is chosen at first, so Enter still starts a new line. Up and
+ * down choose a completion, Enter takes the chosen one, Tab takes the chosen
+ * one or else the first, and Escape closes the list.
+ *
+ * @author Inderpreet
+ */
+public class CompletionPopup extends KeyAdapter implements DocumentListener,
+		CaretListener {
+
+	private static final int MAX_COMPLETIONS = 6;
+	private static final int MIN_PREFIX = 2;
+
+	private final SpellChecker spellChecker;
+	private final TextField textField;
+	private final DefaultListModel<String> completions = new DefaultListModel<String>();
+	private final JList<String> list = new JList<String>(completions);
+	private final Segment segment = new Segment();
+	private final AtomicInteger generation = new AtomicInteger();
+	private final ExecutorService lookups = Executors
+			.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Autocomplete");
+				thread.setDaemon(true);
+				return thread;
+			});
+	private Future<?> pending;
+	private Popup popup;
+	private Span prefix;
+	private String typed;
+	private boolean completing = false;
+
+	public CompletionPopup(SpellChecker spellChecker) {
+		this.spellChecker = spellChecker;
+		textField = spellChecker.getTextField();
+		list.setFocusable(false);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setBorder(BorderFactory.createEtchedBorder());
+		textField.getDefaultDocument().addDocumentListener(this);
+		textField.addKeyListener(this);
+		textField.addCaretListener(this);
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		if (completing) {
+			return;
+		}
+		char inserted = charAt(e.getDocument(), e.getOffset());
+		if (e.getLength() == 1
+				&& WordTokenizer.classify(inserted) != WordTokenizer.SEPARATOR) {
+			SwingUtilities.invokeLater(this::update);
+		} else {
+			hide();
+			if (e.getLength() == 1) {
+				int offset = e.getOffset();
+				SwingUtilities.invokeLater(() -> recordWordBefore(offset));
+			}
+		}
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		if (!completing && isVisible()) {
+			SwingUtilities.invokeLater(this::update);
+		}
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+	}
+
+	@Override
+	public void caretUpdate(CaretEvent e) {
+		// Typing moves the caret one past the prefix until the list catches up
+		if (isVisible()
+				&& (e.getDot() < prefix.getStart() || e.getDot() > prefix
+						.getEnd() + 1)) {
+			hide();
+		}
+	}
+
+	@Override
+	public void keyPressed(KeyEvent e) {
+		if (!isVisible()) {
+			return;
+		}
+		switch (e.getKeyCode()) {
+		case KeyEvent.VK_DOWN:
+			list.setSelectedIndex((list.getSelectedIndex() + 1)
+					% completions.size());
+			e.consume();
+			break;
+		case KeyEvent.VK_UP:
+			int selected = list.getSelectedIndex();
+			list.setSelectedIndex((selected <= 0 ? completions.size()
+					: selected) - 1);
+			e.consume();
+			break;
+		case KeyEvent.VK_ENTER:
+			// Only take a completion the user has chosen
+			if (list.getSelectedIndex() >= 0) {
+				accept(list.getSelectedValue());
+				e.consume();
+			}
+			break;
+		case KeyEvent.VK_TAB:
+			accept(list.getSelectedIndex() >= 0 ? list.getSelectedValue()
+					: completions.firstElement());
+			e.consume();
+			break;
+		case KeyEvent.VK_ESCAPE:
+			hide();
+			e.consume();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Starts looking up completions for the word before the caret
+	 */
+	private void update() {
+		int lookup = generation.incrementAndGet();
+		if (pending != null) {
+			pending.cancel(false);
+			pending = null;
+		}
+		Autocompleter autocompleter = DictionaryRegistry.getAutocompleter(
+				spellChecker.getLanguage()).getNow(null);
+		Span word = wordBeforeCaret();
+		if (autocompleter == null || word == null) {
+			hide();
+			return;
+		}
+		String start;
+		try {
+			start = textField.getDefaultDocument().getText(word.getStart(),
+					word.getLength());
+		} catch (BadLocationException ble) {
+			hide();
+			return;
+		}
+		if (WordTokenizer.normalize(start).length() < MIN_PREFIX) {
+			hide();
+			return;
+		}
+		pending = lookups.submit(() -> {
+			if (lookup != generation.get()) {
+				return;
+			}
+			List<String> found = autocompleter.complete(start, MAX_COMPLETIONS);
+			SwingUtilities.invokeLater(() -> {
+				if (lookup == generation.get()) {
+					show(word, start, found);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Finds the word ending at the caret
+	 *
+	 * @return The word, or null if the caret is not at the end of a word
+	 */
+	private Span wordBeforeCaret() {
+		Document document = textField.getDefaultDocument();
+		int caret = textField.getTextPane().getCaretPosition();
+		if (caret < document.getLength()
+				&& WordTokenizer.classify(charAt(document, caret)) != WordTokenizer.SEPARATOR) {
+			return null;
+		}
+		int start = caret;
+		while (start > 0
+				&& WordTokenizer.classify(charAt(document, start - 1)) != WordTokenizer.SEPARATOR) {
+			start--;
+		}
+		return start < caret ? new Span(start, caret) : null;
+	}
+
+	/**
+	 * Shows the list of completions under the start of a word
+	 *
+	 * @param word
+	 *            The position of the word being completed
+	 * @param start
+	 *            The text of the word
+	 * @param found
+	 *            The completions
+	 */
+	private void show(Span word, String start, List<String> found) {
+		hide();
+		if (found.isEmpty()) {
+			return;
+		}
+		JTextPane textPane = textField.getTextPane();
+		Rectangle bounds;
+		try {
+			bounds = textPane.modelToView(word.getStart());
+		} catch (BadLocationException ble) {
+			return;
+		}
+		if (bounds == null || !textPane.isShowing()) {
+			return;
+		}
+		for (String completion : found) {
+			completions.addElement(SuggestionMenu.matchCase(start, completion));
+		}
+		list.clearSelection();
+		Point location = new Point(bounds.x, bounds.y + bounds.height);
+		SwingUtilities.convertPointToScreen(location, textPane);
+		popup = PopupFactory.getSharedInstance().getPopup(textPane, list,
+				location.x, location.y);
+		prefix = word;
+		typed = start;
+		popup.show();
+	}
+
+	/**
+	 * Hides the list and forgets any lookup still running
+	 */
+	private void hide() {
+		generation.incrementAndGet();
+		if (popup != null) {
+			popup.hide();
+			popup = null;
+		}
+		completions.clear();
+		prefix = null;
+		typed = null;
+	}
+
+	/**
+	 * Returns true if the list is showing
+	 *
+	 * @return Whether the list is showing
+	 */
+	private boolean isVisible() {
+		return popup != null;
+	}
+
+	/**
+	 * Replaces the word being typed with a completion
+	 *
+	 * @param completion
+	 *            The completion
+	 */
+	private void accept(String completion) {
+		Span word = prefix;
+		String start = typed;
+		hide();
+		if (completion == null) {
+			return;
+		}
+		completing = true;
+		try {
+			textField.getDefaultDocument().replace(word.getStart(),
+					word.getLength(), completion, null);
+		} catch (BadLocationException ble) {
+			System.out.println("Couldn't complete " + start);
+		} finally {
+			completing = false;
+		}
+		Autocompleter autocompleter = DictionaryRegistry.getAutocompleter(
+				spellChecker.getLanguage()).getNow(null);
+		if (autocompleter != null) {
+			autocompleter.recordUse(completion);
+		}
+	}
+
+	/**
+	 * Remembers the word before a separator that was just typed, so it ranks
+	 * higher next time
+	 *
+	 * @param offset
+	 *            The position of the separator
+	 */
+	private void recordWordBefore(int offset) {
+		Autocompleter autocompleter = DictionaryRegistry.getAutocompleter(
+				spellChecker.getLanguage()).getNow(null);
+		Document document = textField.getDefaultDocument();
+		if (autocompleter == null || offset > document.getLength()) {
+			return;
+		}
+		int start = offset;
+		while (start > 0
+				&& WordTokenizer.classify(charAt(document, start - 1)) != WordTokenizer.SEPARATOR) {
+			start--;
+		}
+		if (start < offset) {
+			try {
+				autocompleter.recordUse(document.getText(start, offset - start));
+			} catch (BadLocationException ble) {
+				// The text changed before it could be read
+			}
+		}
+	}
+
+	/**
+	 * Gets the character at a position
+	 *
+	 * @param document
+	 *            The document to read from
+	 * @param position
+	 *            The position of the character
+	 * @return The character, or a space if the position is outside the
+	 *         document
+	 */
+	private char charAt(Document document, int position) {
+		try {
+			document.getText(position, 1, segment);
+			return segment.first();
+		} catch (BadLocationException ble) {
+			return ' ';
+		}
+	}
+}
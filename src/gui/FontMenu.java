@@ -101,7 +101,7 @@ public class FontMenu {
 			public void keyPressed(KeyEvent e) {
 				switch (e.getKeyCode()) {
 				case KeyEvent.VK_SPACE:
-					spellChecker.checkLastWord(exampleTextPane.getCaretPosition());
+					spellChecker.requestCheck();
 					break;
 				}
 			}
@@ -355,6 +355,8 @@ public class FontMenu {
 		frame.addWindowListener(new WindowAdapter() {
 			@Override
 			public void windowClosed(WindowEvent e) {
+				// Stop checking the example text and free its dictionary
+				spellChecker.dispose();
 				if (saveSettings) {
 					GUI.textField.setCurrentFont(new Font(fontType, fontStyle,
 							fontSize));
@@ -420,7 +422,6 @@ public class FontMenu {
 	private void setColors() {
 		GUI.spellChecker.getTextField().setCorrectColor(correctColor);
 		GUI.spellChecker.getTextField().setIncorrectColor(incorrectColor);
-		GUI.spellChecker.checkTextArea();
 	}
 
 	/**
@@ -16,8 +16,11 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 import javax.swing.Box;
+import javax.swing.ButtonGroup;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -25,12 +28,17 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.KeyStroke;
 import javax.swing.WindowConstants;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 import javax.swing.text.BadLocationException;
 
+import spelling.Dictionary;
+import spelling.DictionaryRegistry;
 import spelling.SpellChecker;
 import file.FileLoader;
 import file.FileSaver;
@@ -43,6 +51,8 @@ import file.SettingsLoader;
 @SuppressWarnings("serial")
 public class GUI extends JFrame {
 
+	private static final String TITLE = "Dragyn TextEdit";
+
 	public static SpellChecker spellChecker;
 	private String lastSavedText = "";
 	public static TextField textField;
@@ -67,7 +77,7 @@ public class GUI extends JFrame {
 		ArrayList<Image> icons = ImageHandler.getAllIconsAsImages();
 
 		// Set the basics of the frame
-		setTitle("Dragyn TextEdit");
+		setTitle(TITLE);
 		setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
 		setResizable(true);
 		setSize(screenSize.width / 2, screenSize.height / 2);
@@ -81,6 +91,21 @@ public class GUI extends JFrame {
 		// Initialize spellChecker
 		spellChecker = new SpellChecker(textField);
 
+		// Show the progress of background spell checks in the title
+		spellChecker.setProgressListener(progress -> {
+			if (progress < 100) {
+				setTitle(TITLE + " - Checking spelling " + progress + "%");
+			} else {
+				setTitle(TITLE);
+			}
+		});
+
+		// Offer corrections when a misspelled word is right-clicked
+		new SuggestionMenu(spellChecker);
+
+		// Offer completions for the word being typed
+		new CompletionPopup(spellChecker);
+
 		// Set the keyListener of the textField
 		textField.addKeyListener(new KeyAdapter() {
 			@Override
@@ -123,12 +148,8 @@ public class GUI extends JFrame {
 					break;
 				case KeyEvent.VK_ENTER:
 				case KeyEvent.VK_SPACE:
-					int temp1 = initialCursorPostion,
-					temp2 = endCursorPosition;
-					spellChecker.checkLastWord(textField.getTextPane()
-							.getCaretPosition());
-					initialCursorPostion = temp1;
-					endCursorPosition = temp2;
+					// The finished word is checked once typing pauses
+					spellChecker.requestCheck();
 				default:
 					break;
 				}
@@ -284,6 +305,7 @@ public class GUI extends JFrame {
 						String loaded = fileLoader.readChunk(fileLoader
 								.checkDesiredLength(getWidth() * 19));
 						textField.getTextPane().setText(loaded);
+						spellChecker.setFile(toLoad);
 						spellChecker.checkTextArea();
 						textField.getTextPane().setCaretPosition(0);
 						loadedFile = true;
@@ -305,10 +327,42 @@ public class GUI extends JFrame {
 		JMenuItem spellCheckItem = GUICreator.createJMenuItem("Check Spelling",
 				KeyEvent.VK_S, "Review Spelling",
 				KeyStroke.getKeyStroke(KeyEvent.VK_E, ActionEvent.CTRL_MASK),
-				event -> {
-					spellChecker.checkTextArea();
-					showSpellCheckNotification();
-				});
+				event -> spellChecker
+						.checkTextArea(this::showSpellCheckNotification));
+
+		// Create a language JMenu with one item per dictionary
+		JMenu languageMenu = GUICreator.createJMenu("Language", KeyEvent.VK_G);
+		ButtonGroup languageGroup = new ButtonGroup();
+		List<String> languages = DictionaryRegistry.findNames();
+		for (String name : languages) {
+			JRadioButtonMenuItem languageItem = new JRadioButtonMenuItem(
+					getLanguageName(name),
+					name.equals(spellChecker.getLanguage()));
+			languageItem.addActionListener(event -> spellChecker
+					.setLanguage(name));
+			languageGroup.add(languageItem);
+			languageMenu.add(languageItem);
+		}
+
+		// Show the language in use, which stays the same if a dictionary
+		// could not be loaded
+		languageMenu.addMenuListener(new MenuListener() {
+			@Override
+			public void menuSelected(MenuEvent e) {
+				int index = languages.indexOf(spellChecker.getLanguage());
+				if (index >= 0) {
+					languageMenu.getItem(index).setSelected(true);
+				}
+			}
+
+			@Override
+			public void menuDeselected(MenuEvent e) {
+			}
+
+			@Override
+			public void menuCanceled(MenuEvent e) {
+			}
+		});
 
 		// Create a help JMenu
 		JMenu helpMenu = GUICreator.createJMenu("Help", KeyEvent.VK_H);
@@ -326,7 +380,15 @@ public class GUI extends JFrame {
 											mainPanel,
 											"Type as you would normally and the program will find and"
 													+ "\n"
-													+ " mark incorrectly spelled words upon pressing \"Space\"",
+													+ " mark incorrectly spelled words whenever you pause typing"
+													+ "\n"
+													+ " Right-click a marked word to see suggestions"
+													+ "\n"
+													+ " or to add it to your dictionary"
+													+ "\n"
+													+ " Take the first completion while typing with Tab,"
+													+ "\n"
+													+ " or choose one with Up and Down and press Enter",
 											"Help Message",
 											JOptionPane.INFORMATION_MESSAGE);
 
@@ -346,6 +408,7 @@ public class GUI extends JFrame {
 		fileMenu.add(exitItem);
 		editMenu.add(fontMenuItem);
 		editMenu.add(spellCheckItem);
+		editMenu.add(languageMenu);
 		helpMenu.add(aboutItem);
 		helpMenu.add(helpItem);
 
@@ -365,6 +428,9 @@ public class GUI extends JFrame {
 		JScrollPane scrollPane = GUICreator.createJScrollPane(textField
 				.getTextPane());
 
+		// Check the visible text first
+		spellChecker.followViewport(scrollPane.getViewport());
+
 		// Get the scroll bars from the scroll pane
 		final JScrollBar verticalScrollBar = scrollPane.getVerticalScrollBar();
 
@@ -399,10 +465,31 @@ public class GUI extends JFrame {
 		// Add scroll pane to mainPanel
 		mainPanel.add(scrollPane);
 
+		// Show live counts under the text
+		mainPanel.add(new StatusBar(textField, spellChecker.getHighlighter()),
+				BorderLayout.SOUTH);
+
 		// Sets content
 		setContentPane(mainPanel);
 	}
 
+	/**
+	 * Gets the name of a dictionary to show in the language menu
+	 * 
+	 * @param name
+	 *            The name of the dictionary, such as en_GB
+	 * @return The language it is for, or the name itself if it is not a
+	 *         language code
+	 */
+	private static String getLanguageName(String name) {
+		if (name.equals(Dictionary.DEFAULT_NAME)) {
+			return "Default";
+		}
+		Locale locale = Locale.forLanguageTag(name.replace('_', '-'));
+		String displayName = locale.getDisplayName();
+		return displayName.isEmpty() ? name : displayName;
+	}
+
 	/**
 	 * Displays a dialog with number of errors found
 	 */
@@ -414,6 +501,10 @@ public class GUI extends JFrame {
 		if (errorsFound == 1) {
 			errorString = "Found " + spellChecker.getErrorsFound() + " error";
 		}
+		Dictionary dictionary = spellChecker.getDictionary();
+		if (dictionary != null && dictionary.getBloomFilter() != null) {
+			errorString += "\n" + dictionary.getBloomFilter();
+		}
 		JOptionPane.showMessageDialog(mainPanel, errorString,
 				"Spell Check Complete", JOptionPane.INFORMATION_MESSAGE);
 	}
@@ -4,6 +4,10 @@ import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
+import metrics.EditorMetrics;
+import spelling.Dictionary;
+import spelling.DictionaryRegistry;
+
 /**
  *
  * @author Inderpreet
@@ -11,6 +15,15 @@ import javax.swing.UnsupportedLookAndFeelException;
 public class Main {
 
 	public static void main(String[] args) {
+		// Publish timings over JMX
+		EditorMetrics.start();
+
+		// Start loading the dictionary while the splash screen shows
+		DictionaryRegistry.getDefaultDictionary();
+		DictionaryRegistry.getSuggestionEngine(Dictionary.DEFAULT_NAME);
+		DictionaryRegistry.getAutocompleter(Dictionary.DEFAULT_NAME);
+		DictionaryRegistry.getNgramModel(Dictionary.DEFAULT_NAME);
+
 		SwingUtilities.invokeLater(new Runnable() {
 			@Override
 			public void run() {
@@ -0,0 +1,77 @@
+package gui;
+
+import java.awt.FlowLayout;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import spelling.DocumentStatistics;
+import spelling.MisspellingHighlighter;
+
+/**
+ * Shows the word, character and line counts of the text area and how many
+ * words are marked as misspelled. The counts are kept as the text is edited,
+ * and the label is refreshed at most once per pass of the event queue however
+ * many edits and marks happen in between.
+ *
+ * @author Inderpreet
+ */
+@SuppressWarnings("serial")
+public class StatusBar extends JPanel {
+
+	private final DocumentStatistics statistics;
+	private final MisspellingHighlighter highlighter;
+	private final JLabel label = new JLabel();
+	private boolean refreshPending = false;
+
+	/**
+	 * Creates a status bar for a text field
+	 *
+	 * @param textField
+	 *            The text field to count
+	 * @param highlighter
+	 *            The highlighter marking its misspelled words
+	 */
+	public StatusBar(TextField textField, MisspellingHighlighter highlighter) {
+		super(new FlowLayout(FlowLayout.LEADING, 8, 2));
+		this.highlighter = highlighter;
+		statistics = new DocumentStatistics(textField.getDefaultDocument());
+		setBorder(BorderFactory.createEtchedBorder());
+		add(label);
+		statistics.setChangeListener(this::scheduleRefresh);
+		highlighter.setChangeListener(this::scheduleRefresh);
+		refresh();
+	}
+
+	/**
+	 * Gets the counts shown
+	 *
+	 * @return The statistics
+	 */
+	public DocumentStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Refreshes the label once the current events have been handled
+	 */
+	private void scheduleRefresh() {
+		if (!refreshPending) {
+			refreshPending = true;
+			SwingUtilities.invokeLater(this::refresh);
+		}
+	}
+
+	/**
+	 * Shows the current counts
+	 */
+	private void refresh() {
+		refreshPending = false;
+		label.setText(String.format(
+				"Words: %,d    Characters: %,d    Lines: %,d    Misspelled: %,d",
+				statistics.getWordCount(), statistics.getCharacterCount(),
+				statistics.getLineCount(), highlighter.getMarkCount()));
+	}
+}
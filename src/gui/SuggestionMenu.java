@@ -0,0 +1,230 @@
+package gui;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.JTextPane;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import spelling.DictionaryRegistry;
+import spelling.NgramModel;
+import spelling.Span;
+import spelling.SpellChecker;
+import spelling.SuggestionEngine;
+import spelling.UserDictionary;
+import spelling.WordTokenizer;
+
+/**
+ * Shows corrections for a misspelled word when it is right-clicked
+ *
+ * @author Inderpreet
+ */
+public class SuggestionMenu extends MouseAdapter {
+
+	private static final int MAX_SUGGESTIONS = 5;
+
+	/**
+	 * How far either side of a misspelling to look for the words around it
+	 */
+	private static final int CONTEXT_LENGTH = 64;
+
+	private final SpellChecker spellChecker;
+
+	public SuggestionMenu(SpellChecker spellChecker) {
+		this.spellChecker = spellChecker;
+		spellChecker.getTextField().getTextPane().addMouseListener(this);
+	}
+
+	@Override
+	public void mousePressed(MouseEvent e) {
+		if (e.isPopupTrigger()) {
+			showMenu(e);
+		}
+	}
+
+	@Override
+	public void mouseReleased(MouseEvent e) {
+		if (e.isPopupTrigger()) {
+			showMenu(e);
+		}
+	}
+
+	/**
+	 * Shows the suggestions for the word under the mouse, if it is misspelled
+	 *
+	 * @param e
+	 *            The mouse event that opened the menu
+	 */
+	private void showMenu(MouseEvent e) {
+		JTextPane textPane = spellChecker.getTextField().getTextPane();
+		Span span = spellChecker.getMisspelledWordAt(textPane.viewToModel(e
+				.getPoint()));
+		if (span == null) {
+			return;
+		}
+		String word;
+		try {
+			word = textPane.getDocument().getText(span.getStart(),
+					span.getLength());
+		} catch (BadLocationException ble) {
+			return;
+		}
+
+		JPopupMenu menu = new JPopupMenu();
+		SuggestionEngine engine = DictionaryRegistry.getSuggestionEngine(
+				spellChecker.getLanguage()).getNow(null);
+		NgramModel model = DictionaryRegistry.getNgramModel(
+				spellChecker.getLanguage()).getNow(null);
+		if (engine == null) {
+			JMenuItem loadingItem = new JMenuItem("Loading suggestions...");
+			loadingItem.setEnabled(false);
+			menu.add(loadingItem);
+		} else {
+			Document document = textPane.getDocument();
+			List<String> suggestions = engine.suggest(word,
+					wordBefore(document, span.getStart()),
+					wordAfter(document, span.getEnd()), model, MAX_SUGGESTIONS);
+			if (suggestions.isEmpty()) {
+				JMenuItem emptyItem = new JMenuItem("No suggestions");
+				emptyItem.setEnabled(false);
+				menu.add(emptyItem);
+			}
+			for (String suggestion : suggestions) {
+				String replacement = matchCase(word, suggestion);
+				JMenuItem suggestionItem = new JMenuItem(replacement);
+				suggestionItem.addActionListener(event -> replace(span,
+						replacement));
+				menu.add(suggestionItem);
+			}
+		}
+		menu.addSeparator();
+		JMenuItem addItem = new JMenuItem("Add to Dictionary");
+		addItem.addActionListener(event -> addWord(word));
+		menu.add(addItem);
+		menu.show(textPane, e.getX(), e.getY());
+	}
+
+	/**
+	 * Replaces a misspelled word
+	 *
+	 * @param span
+	 *            The position of the word
+	 * @param replacement
+	 *            The word to put in its place
+	 */
+	private void replace(Span span, String replacement) {
+		try {
+			spellChecker.getTextField().getDefaultDocument()
+					.replace(span.getStart(), span.getLength(), replacement,
+							null);
+		} catch (BadLocationException ble) {
+			System.out.println("Couldn't replace word");
+		}
+	}
+
+	/**
+	 * Adds a word to the user dictionary and checks the text again so every
+	 * copy of it stops being marked
+	 *
+	 * @param word
+	 *            The word to add
+	 */
+	private void addWord(String word) {
+		if (UserDictionary.getDefault().add(word)) {
+			spellChecker.checkTextArea();
+		}
+	}
+
+	/**
+	 * Finds the word before a position in the same sentence
+	 *
+	 * @param document
+	 *            The document
+	 * @param position
+	 *            The position
+	 * @return The word, or null if there is none
+	 */
+	private static String wordBefore(Document document, int position) {
+		try {
+			int from = Math.max(0, position - CONTEXT_LENGTH);
+			String text = document.getText(from, position - from);
+			WordTokenizer tokenizer = new WordTokenizer().reset(text, 0,
+					text.length());
+			String word = null;
+			while (tokenizer.next()) {
+				word = text.substring(tokenizer.getStart(), tokenizer.getEnd());
+			}
+			return word == null || endsSentence(word) ? null : word;
+		} catch (BadLocationException ble) {
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the word after a position in the same sentence
+	 *
+	 * @param document
+	 *            The document
+	 * @param position
+	 *            The position
+	 * @return The word, or null if there is none
+	 */
+	private static String wordAfter(Document document, int position) {
+		try {
+			int to = Math.min(document.getLength(), position + CONTEXT_LENGTH);
+			String text = document.getText(position, to - position);
+			WordTokenizer tokenizer = new WordTokenizer().reset(text, 0,
+					text.length());
+			if (!tokenizer.next()) {
+				return null;
+			}
+			if (tokenizer.getStart() == 0) {
+				// Punctuation straight after the misspelling
+				if (endsSentence(text.substring(0, tokenizer.getEnd()))
+						|| !tokenizer.next()) {
+					return null;
+				}
+			}
+			return text.substring(tokenizer.getStart(), tokenizer.getEnd());
+		} catch (BadLocationException ble) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if a word ends with a full stop, question mark or
+	 * exclamation mark
+	 *
+	 * @param word
+	 *            The word
+	 * @return Whether the word ends a sentence
+	 */
+	private static boolean endsSentence(String word) {
+		char last = word.charAt(word.length() - 1);
+		return last == '.' || last == '?' || last == '!';
+	}
+
+	/**
+	 * Capitalizes a suggestion the same way as the misspelled word
+	 *
+	 * @param word
+	 *            The misspelled word
+	 * @param suggestion
+	 *            The suggestion in lowercase
+	 * @return The suggestion with matching capitals
+	 */
+	static String matchCase(String word, String suggestion) {
+		if (suggestion.isEmpty() || !Character.isUpperCase(word.charAt(0))) {
+			return suggestion;
+		}
+		if (word.length() > 1 && word.equals(word.toUpperCase())) {
+			return suggestion.toUpperCase();
+		}
+		return Character.toUpperCase(suggestion.charAt(0))
+				+ suggestion.substring(1);
+	}
+}
@@ -112,6 +112,9 @@ public class TextField {
 	 */
 	public void setCorrectColor(Color correctColor) {
 		this.correctColor = correctColor;
+		if (textPane != null) {
+			textPane.setForeground(correctColor);
+		}
 	}
 
 	/**
@@ -142,6 +145,10 @@ public class TextField {
 	 */
 	public void setIncorrectColor(Color incorrectColor) {
 		this.incorrectColor = incorrectColor;
+		if (textPane != null) {
+			// Misspelled words are underlined in this color when painted
+			textPane.repaint();
+		}
 	}
 
 	/**
@@ -0,0 +1,215 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import spelling.DictionaryRegistry;
+
+/**
+ * Times the editor's hot paths and counts the words it checks. Everything is
+ * recorded with lock-free adders so the instrumentation costs a few atomic
+ * operations per call. The figures are published as an MBean named
+ * DragynTextEdit:type=EditorMetrics and can also be printed periodically.
+ *
+ * @author Inderpreet
+ */
+public class EditorMetrics implements EditorMetricsMXBean {
+
+	public static final String OBJECT_NAME = "DragynTextEdit:type=EditorMetrics";
+
+	/**
+	 * How often to print the metrics in seconds, or 0 to never print them. Set
+	 * with -Ddragyn.metrics.log=60
+	 */
+	public static final int LOG_INTERVAL = Integer.getInteger(
+			"dragyn.metrics.log", 0);
+
+	public static final LatencyHistogram CHECK_LAST_WORD = new LatencyHistogram(
+			"checkLastWord");
+	public static final LatencyHistogram CHECK_EDITS = new LatencyHistogram(
+			"checkEdits");
+	public static final LatencyHistogram CHECK_TEXT_AREA = new LatencyHistogram(
+			"checkTextArea");
+	public static final LatencyHistogram READ_CHUNK = new LatencyHistogram(
+			"readChunk");
+	public static final LatencyHistogram SAVE = new LatencyHistogram("save");
+	public static final LatencyHistogram LOAD_SETTINGS = new LatencyHistogram(
+			"loadSettings");
+	public static final LatencyHistogram CHECK_DELAY = new LatencyHistogram(
+			"checkDelay");
+
+	private static final LatencyHistogram[] HISTOGRAMS = { CHECK_LAST_WORD,
+			CHECK_EDITS, CHECK_TEXT_AREA, READ_CHUNK, SAVE, LOAD_SETTINGS,
+			CHECK_DELAY };
+
+	private static final LongAdder wordsChecked = new LongAdder();
+	private static final LongAdder misspellingsFound = new LongAdder();
+	private static final LongAdder checksRequested = new LongAdder();
+	private static final LongAdder checksCoalesced = new LongAdder();
+	private static final AtomicInteger errorsFound = new AtomicInteger();
+	private static final EditorMetrics instance = new EditorMetrics();
+	private static boolean started = false;
+
+	private EditorMetrics() {
+	}
+
+	/**
+	 * Registers the MBean and starts printing the metrics if asked to
+	 */
+	public static synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(instance,
+					new ObjectName(OBJECT_NAME));
+		} catch (JMException jme) {
+			System.out.println("Could not register metrics");
+		}
+		if (LOG_INTERVAL > 0) {
+			ScheduledExecutorService logger = Executors
+					.newSingleThreadScheduledExecutor(runnable -> {
+						Thread thread = new Thread(runnable, "Metrics Logger");
+						thread.setDaemon(true);
+						return thread;
+					});
+			logger.scheduleAtFixedRate(() -> System.out.println(instance),
+					LOG_INTERVAL, LOG_INTERVAL, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Counts words that were checked
+	 *
+	 * @param words
+	 *            The number of words checked
+	 * @param misspelled
+	 *            How many of them were misspelled
+	 */
+	public static void recordWords(long words, long misspelled) {
+		wordsChecked.add(words);
+		misspellingsFound.add(misspelled);
+	}
+
+	/**
+	 * Counts a request for a scheduled check
+	 *
+	 * @param coalesced
+	 *            Whether it replaced a request that had not run yet
+	 */
+	public static void recordCheckRequest(boolean coalesced) {
+		checksRequested.increment();
+		if (coalesced) {
+			checksCoalesced.increment();
+		}
+	}
+
+	/**
+	 * Records the number of errors the last full check found
+	 *
+	 * @param errors
+	 *            The number of misspelled words in the document
+	 */
+	public static void recordErrorsFound(int errors) {
+		errorsFound.set(errors);
+	}
+
+	@Override
+	public LatencySnapshot getCheckLastWordLatency() {
+		return LatencySnapshot.of(CHECK_LAST_WORD);
+	}
+
+	@Override
+	public LatencySnapshot getCheckEditsLatency() {
+		return LatencySnapshot.of(CHECK_EDITS);
+	}
+
+	@Override
+	public LatencySnapshot getCheckTextAreaLatency() {
+		return LatencySnapshot.of(CHECK_TEXT_AREA);
+	}
+
+	@Override
+	public LatencySnapshot getReadChunkLatency() {
+		return LatencySnapshot.of(READ_CHUNK);
+	}
+
+	@Override
+	public LatencySnapshot getSaveLatency() {
+		return LatencySnapshot.of(SAVE);
+	}
+
+	@Override
+	public LatencySnapshot getLoadSettingsLatency() {
+		return LatencySnapshot.of(LOAD_SETTINGS);
+	}
+
+	@Override
+	public LatencySnapshot getCheckDelayLatency() {
+		return LatencySnapshot.of(CHECK_DELAY);
+	}
+
+	@Override
+	public int getDictionarySize() {
+		return DictionaryRegistry.getLoadedSize();
+	}
+
+	@Override
+	public long getWordsChecked() {
+		return wordsChecked.sum();
+	}
+
+	@Override
+	public long getMisspellingsFound() {
+		return misspellingsFound.sum();
+	}
+
+	@Override
+	public int getErrorsFound() {
+		return errorsFound.get();
+	}
+
+	@Override
+	public long getChecksRequested() {
+		return checksRequested.sum();
+	}
+
+	@Override
+	public long getChecksCoalesced() {
+		return checksCoalesced.sum();
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram histogram : HISTOGRAMS) {
+			histogram.reset();
+		}
+		wordsChecked.reset();
+		misspellingsFound.reset();
+		checksRequested.reset();
+		checksCoalesced.reset();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("Editor metrics: ");
+		builder.append(getDictionarySize()).append(" dictionary words, ")
+				.append(getWordsChecked()).append(" words checked, ")
+				.append(getMisspellingsFound()).append(" misspellings, ")
+				.append(getErrorsFound()).append(" errors in document, ")
+				.append(getChecksRequested()).append(" checks requested, ")
+				.append(getChecksCoalesced()).append(" coalesced");
+		for (LatencyHistogram histogram : HISTOGRAMS) {
+			builder.append("\n  ").append(histogram);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,72 @@
+package metrics;
+
+/**
+ * The editor's metrics as seen through JMX
+ *
+ * @author Inderpreet
+ */
+public interface EditorMetricsMXBean {
+
+	/**
+	 * Gets how long checking the word the user just finished typing takes
+	 *
+	 * @return The latency of checking the word before the caret
+	 */
+	LatencySnapshot getCheckLastWordLatency();
+
+	/**
+	 * Gets how long rechecking the words touched by edits takes, which
+	 * happens once each time the user stops typing
+	 *
+	 * @return The latency of the incremental checker
+	 */
+	LatencySnapshot getCheckEditsLatency();
+
+	LatencySnapshot getCheckTextAreaLatency();
+
+	LatencySnapshot getReadChunkLatency();
+
+	LatencySnapshot getSaveLatency();
+
+	LatencySnapshot getLoadSettingsLatency();
+
+	/**
+	 * Gets how long scheduled checks waited for the user to stop typing
+	 *
+	 * @return The latency of the check scheduler
+	 */
+	LatencySnapshot getCheckDelayLatency();
+
+	/**
+	 * Gets the number of words in the dictionaries that are loaded
+	 *
+	 * @return The number of words
+	 */
+	int getDictionarySize();
+
+	long getWordsChecked();
+
+	long getMisspellingsFound();
+
+	int getErrorsFound();
+
+	/**
+	 * Gets how many times a check was scheduled
+	 *
+	 * @return The number of requests
+	 */
+	long getChecksRequested();
+
+	/**
+	 * Gets how many scheduled checks were replaced by a later request before
+	 * they ran
+	 *
+	 * @return The number of requests that did no work of their own
+	 */
+	long getChecksCoalesced();
+
+	/**
+	 * Clears every histogram and counter
+	 */
+	void reset();
+}
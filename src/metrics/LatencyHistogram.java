@@ -0,0 +1,157 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long an operation takes in buckets that double in width, so
+ * recording a time is a few atomic adds with no locks or allocation.
+ * Percentiles are read back as the upper bound of the bucket they fall in.
+ *
+ * @author Inderpreet
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 64;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Creates an empty histogram
+	 *
+	 * @param name
+	 *            The name of the operation being timed
+	 */
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records how long the operation took
+	 *
+	 * @param nanos
+	 *            The time taken in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		// Bucket b holds times from 2^(b-1) to 2^b - 1
+		buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * Records the time since a start time
+	 *
+	 * @param startNanos
+	 *            The value of System.nanoTime() when the operation started
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Gets the name of the operation being timed
+	 *
+	 * @return The name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of times recorded
+	 *
+	 * @return The count
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the mean time
+	 *
+	 * @return The mean in microseconds
+	 */
+	public double getMeanMicros() {
+		long total = getCount();
+		return total == 0 ? 0 : totalNanos.sum() / 1000.0 / total;
+	}
+
+	/**
+	 * Gets the longest time
+	 *
+	 * @return The longest time in microseconds
+	 */
+	public double getMaxMicros() {
+		return maxNanos.get() / 1000.0;
+	}
+
+	/**
+	 * Gets a time that a share of the recorded times are no longer than
+	 *
+	 * @param percentile
+	 *            The share between 0 and 100
+	 * @return The time in microseconds, rounded up to a power of two
+	 *         nanoseconds
+	 */
+	public double getPercentileMicros(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0) {
+				return Math.min(upperBound(i), maxNanos.get()) / 1000.0;
+			}
+		}
+		return getMaxMicros();
+	}
+
+	/**
+	 * Clears every recorded time
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+
+	/**
+	 * Gets the largest time that falls in a bucket
+	 *
+	 * @param bucket
+	 *            The bucket
+	 * @return The time in nanoseconds
+	 */
+	private static long upperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d calls, mean %.1f us, p50 %.1f us,"
+				+ " p99 %.1f us, max %.1f us", name, getCount(),
+				getMeanMicros(), getPercentileMicros(50),
+				getPercentileMicros(99), getMaxMicros());
+	}
+}
@@ -0,0 +1,62 @@
+package metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The figures of a latency histogram at one moment, shown as a single
+ * attribute in JMX consoles
+ *
+ * @author Inderpreet
+ */
+public class LatencySnapshot {
+
+	private final long count;
+	private final double meanMicros;
+	private final double p50Micros;
+	private final double p99Micros;
+	private final double maxMicros;
+
+	@ConstructorProperties({ "count", "meanMicros", "p50Micros", "p99Micros",
+			"maxMicros" })
+	public LatencySnapshot(long count, double meanMicros, double p50Micros,
+			double p99Micros, double maxMicros) {
+		this.count = count;
+		this.meanMicros = meanMicros;
+		this.p50Micros = p50Micros;
+		this.p99Micros = p99Micros;
+		this.maxMicros = maxMicros;
+	}
+
+	/**
+	 * Takes a snapshot of a histogram
+	 *
+	 * @param histogram
+	 *            The histogram
+	 * @return The snapshot
+	 */
+	public static LatencySnapshot of(LatencyHistogram histogram) {
+		return new LatencySnapshot(histogram.getCount(),
+				histogram.getMeanMicros(), histogram.getPercentileMicros(50),
+				histogram.getPercentileMicros(99), histogram.getMaxMicros());
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMeanMicros() {
+		return meanMicros;
+	}
+
+	public double getP50Micros() {
+		return p50Micros;
+	}
+
+	public double getP99Micros() {
+		return p99Micros;
+	}
+
+	public double getMaxMicros() {
+		return maxMicros;
+	}
+}
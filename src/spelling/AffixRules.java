@@ -0,0 +1,351 @@
+package spelling;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The prefix and suffix rules of a Hunspell affix file. A dictionary in this
+ * format stores only stems, each with flags naming the rules that may be
+ * applied to it, and a word is accepted if stripping an affix leaves a stem
+ * that allows that affix. Suffixes and prefixes can be combined when both
+ * rules allow it. Compounding and the other Hunspell options are not
+ * supported.
+ *
+ * @author Inderpreet
+ */
+public class AffixRules {
+
+	/**
+	 * One PFX or SFX line
+	 */
+	private static final class Entry {
+
+		private final char flag;
+		private final boolean cross;
+		private final String strip;
+		private final String add;
+		private final char[][] condition;
+		private final boolean[] negated;
+
+		Entry(char flag, boolean cross, String strip, String add,
+				String condition) {
+			this.flag = flag;
+			this.cross = cross;
+			this.strip = strip;
+			this.add = add;
+			ArrayList<char[]> sets = new ArrayList<char[]>();
+			ArrayList<Boolean> negations = new ArrayList<Boolean>();
+			for (int i = 0; i < condition.length(); i++) {
+				char c = condition.charAt(i);
+				if (c == '.') {
+					sets.add(null);
+					negations.add(false);
+				} else if (c == '[') {
+					int close = condition.indexOf(']', i);
+					if (close < 0) {
+						close = condition.length();
+					}
+					boolean negate = i + 1 < close
+							&& condition.charAt(i + 1) == '^';
+					sets.add(condition.substring(negate ? i + 2 : i + 1, close)
+							.toLowerCase().toCharArray());
+					negations.add(negate);
+					i = close;
+				} else {
+					sets.add(new char[] { Character.toLowerCase(c) });
+					negations.add(false);
+				}
+			}
+			this.condition = sets.toArray(new char[sets.size()][]);
+			negated = new boolean[negations.size()];
+			for (int i = 0; i < negated.length; i++) {
+				negated[i] = negations.get(i);
+			}
+		}
+
+		/**
+		 * Returns true if the condition matches part of a stem
+		 *
+		 * @param stem
+		 *            The stem
+		 * @param start
+		 *            Where the condition is matched from
+		 * @return Whether the condition matches
+		 */
+		boolean matches(String stem, int start) {
+			if (start < 0 || start + condition.length > stem.length()) {
+				return false;
+			}
+			for (int i = 0; i < condition.length; i++) {
+				if (condition[i] == null) {
+					continue;
+				}
+				boolean found = false;
+				char c = stem.charAt(start + i);
+				for (char allowed : condition[i]) {
+					if (allowed == c) {
+						found = true;
+						break;
+					}
+				}
+				if (found == negated[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private enum FlagType {
+		SINGLE, LONG, NUMBER
+	}
+
+	private final HashMap<String, List<Entry>> prefixes = new HashMap<String, List<Entry>>();
+	private final HashMap<String, List<Entry>> suffixes = new HashMap<String, List<Entry>>();
+	private final HashMap<String, Boolean> crossProducts = new HashMap<String, Boolean>();
+	private Charset charset = StandardCharsets.ISO_8859_1;
+	private FlagType flagType = FlagType.SINGLE;
+	private int longestPrefix = 0;
+	private int longestSuffix = 0;
+
+	/**
+	 * Reads an affix file
+	 *
+	 * @param inputStream
+	 *            The affix file
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	public AffixRules(InputStream inputStream) throws IOException {
+		byte[] bytes = readAll(inputStream);
+		// The encoding is given inside the file, so find it first
+		String text = new String(bytes, StandardCharsets.ISO_8859_1);
+		for (String line : text.split("\r?\n")) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length > 1 && fields[0].equals("SET")) {
+				try {
+					charset = Charset.forName(fields[1]);
+				} catch (IllegalArgumentException iae) {
+					System.out.println("Unknown affix encoding " + fields[1]);
+				}
+			}
+		}
+		for (String line : new String(bytes, charset).split("\r?\n")) {
+			parseLine(line.trim().split("\\s+"));
+		}
+	}
+
+	/**
+	 * Loads the affix file that goes with a dictionary
+	 *
+	 * @param name
+	 *            The name of the dictionary without its extension
+	 * @return The rules, or null if the dictionary has no affix file
+	 */
+	public static AffixRules load(String name) {
+		try (InputStream inputStream = AffixRules.class
+				.getResourceAsStream(name + ".aff")) {
+			return inputStream == null ? null : new AffixRules(inputStream);
+		} catch (IOException ioe) {
+			System.out.println("Could not load affix rules " + name);
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the encoding of the affix file, which the dictionary file shares
+	 *
+	 * @return The encoding
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Splits the flags written after a stem in a dictionary file
+	 *
+	 * @param flags
+	 *            The flags as written
+	 * @return One character per flag
+	 */
+	public String parseFlags(String flags) {
+		switch (flagType) {
+		case LONG:
+			StringBuilder pairs = new StringBuilder(flags.length() / 2);
+			for (int i = 0; i + 1 < flags.length(); i += 2) {
+				pairs.append((char) (flags.charAt(i) << 8 | flags.charAt(i + 1)));
+			}
+			return pairs.toString();
+		case NUMBER:
+			StringBuilder numbers = new StringBuilder();
+			for (String number : flags.split(",")) {
+				try {
+					numbers.append((char) Integer.parseInt(number.trim()));
+				} catch (NumberFormatException nfe) {
+					// Skip malformed flags
+				}
+			}
+			return numbers.toString();
+		default:
+			return flags;
+		}
+	}
+
+	/**
+	 * Returns true if a word is a stem of a dictionary with an affix its flags
+	 * allow
+	 *
+	 * @param dictionary
+	 *            The dictionary holding the stems
+	 * @param word
+	 *            The lowercase letters of the word
+	 * @return Whether the word can be formed from a stem
+	 */
+	boolean accepts(Dictionary dictionary, String word) {
+		for (int length = 0; length <= Math.min(longestSuffix, word.length() - 1); length++) {
+			List<Entry> entries = suffixes.get(word.substring(word.length()
+					- length));
+			if (entries == null) {
+				continue;
+			}
+			String remainder = word.substring(0, word.length() - length);
+			for (Entry suffix : entries) {
+				String stem = remainder + suffix.strip;
+				if (!suffix.matches(stem, stem.length() - suffix.condition.length)) {
+					continue;
+				}
+				if (dictionary.hasFlag(stem, suffix.flag)
+						|| suffix.cross
+						&& acceptsPrefixed(dictionary, stem, suffix.flag)) {
+					return true;
+				}
+			}
+		}
+		return acceptsPrefixed(dictionary, word, (char) 0);
+	}
+
+	/**
+	 * Returns true if a word is a stem with a prefix its flags allow
+	 *
+	 * @param dictionary
+	 *            The dictionary holding the stems
+	 * @param word
+	 *            The lowercase letters of the word
+	 * @param suffixFlag
+	 *            The flag of a suffix already stripped that the stem must
+	 *            also allow, or 0 for none
+	 * @return Whether the word can be formed from a stem
+	 */
+	private boolean acceptsPrefixed(Dictionary dictionary, String word,
+			char suffixFlag) {
+		for (int length = 0; length <= Math.min(longestPrefix, word.length() - 1); length++) {
+			List<Entry> entries = prefixes.get(word.substring(0, length));
+			if (entries == null) {
+				continue;
+			}
+			String remainder = word.substring(length);
+			for (Entry prefix : entries) {
+				if (suffixFlag != 0 && !prefix.cross) {
+					continue;
+				}
+				String stem = prefix.strip + remainder;
+				if (prefix.matches(stem, 0)
+						&& dictionary.hasFlag(stem, prefix.flag)
+						&& (suffixFlag == 0 || dictionary.hasFlag(stem,
+								suffixFlag))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads one line of the affix file
+	 *
+	 * @param fields
+	 *            The line split at whitespace
+	 */
+	private void parseLine(String[] fields) {
+		if (fields.length > 1 && fields[0].equals("FLAG")) {
+			if (fields[1].equals("long")) {
+				flagType = FlagType.LONG;
+			} else if (fields[1].equals("num")) {
+				flagType = FlagType.NUMBER;
+			}
+			return;
+		}
+		boolean prefix = fields[0].equals("PFX");
+		if (!prefix && !fields[0].equals("SFX") || fields.length < 4) {
+			return;
+		}
+		if (fields.length == 4) {
+			// The header of a group says whether it combines with other affixes
+			crossProducts.put(fields[0] + " " + fields[1], fields[2].equals("Y"));
+			return;
+		}
+		String flags = parseFlags(fields[1]);
+		if (flags.isEmpty()) {
+			return;
+		}
+		String strip = fields[2].equals("0") ? "" : WordTokenizer
+				.normalize(fields[2]);
+		String add = fields[3];
+		int slash = add.indexOf('/');
+		if (slash >= 0) {
+			// Continuation classes are not supported
+			add = add.substring(0, slash);
+		}
+		add = add.equals("0") ? "" : WordTokenizer.normalize(add);
+		String condition = fields[4];
+		Entry entry = new Entry(flags.charAt(0), isCross(prefix, fields[1]),
+				strip, add, condition);
+		HashMap<String, List<Entry>> entries = prefix ? prefixes : suffixes;
+		entries.computeIfAbsent(add, key -> new ArrayList<Entry>()).add(entry);
+		if (prefix) {
+			longestPrefix = Math.max(longestPrefix, add.length());
+		} else {
+			longestSuffix = Math.max(longestSuffix, add.length());
+		}
+	}
+
+	/**
+	 * Looks up whether a rule group may be combined with the other kind of
+	 * affix, as given in its header line
+	 *
+	 * @param prefix
+	 *            Whether the group is of prefixes
+	 * @param flag
+	 *            The flag of the group as written
+	 * @return Whether the rules can be combined
+	 */
+	private boolean isCross(boolean prefix, String flag) {
+		Boolean cross = crossProducts.get((prefix ? "PFX " : "SFX ") + flag);
+		return cross == null || cross;
+	}
+
+	/**
+	 * Reads a whole stream
+	 *
+	 * @param inputStream
+	 *            The stream
+	 * @return The bytes read
+	 * @throws IOException
+	 *             If the stream could not be read
+	 */
+	private static byte[] readAll(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = inputStream.read(buffer)) > 0) {
+			outputStream.write(buffer, 0, read);
+		}
+		return outputStream.toByteArray();
+	}
+}
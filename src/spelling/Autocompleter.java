@@ -0,0 +1,103 @@
+package spelling;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Completes partly typed words from a dictionary. Words the user has typed
+ * or picked recently come first, most recent first, followed by the shortest
+ * dictionary words with the same start. Safe to use from any thread.
+ *
+ * @author Inderpreet
+ */
+public class Autocompleter {
+
+	/**
+	 * The number of recently used words remembered for ranking
+	 */
+	public static final int RECENT_WORDS = 256;
+
+	private final PrefixTrie trie;
+	private final LinkedHashMap<String, String> recentWords = new LinkedHashMap<String, String>(
+			RECENT_WORDS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > RECENT_WORDS;
+		}
+	};
+
+	/**
+	 * Creates an autocompleter for a dictionary, building its prefix tree
+	 *
+	 * @param dictionary
+	 *            The dictionary
+	 */
+	public Autocompleter(Dictionary dictionary) {
+		trie = new PrefixTrie(dictionary);
+	}
+
+	/**
+	 * Finds completions for the start of a word
+	 *
+	 * @param prefix
+	 *            The start of the word
+	 * @param max
+	 *            The most completions to return
+	 * @return The completions, best first, not including the prefix itself
+	 */
+	public List<String> complete(CharSequence prefix, int max) {
+		String key = WordTokenizer.normalize(prefix);
+		ArrayList<String> completions = new ArrayList<String>(max);
+		synchronized (recentWords) {
+			for (Map.Entry<String, String> entry : recentWords.entrySet()) {
+				if (entry.getKey().length() > key.length()
+						&& entry.getKey().startsWith(key)) {
+					// Later entries were used more recently
+					completions.add(0, entry.getValue());
+				}
+			}
+		}
+		if (completions.size() > max) {
+			completions.subList(max, completions.size()).clear();
+		}
+		for (String word : trie.complete(key, max + completions.size())) {
+			if (completions.size() == max) {
+				break;
+			}
+			if (!completions.contains(word)) {
+				completions.add(word);
+			}
+		}
+		return completions;
+	}
+
+	/**
+	 * Records that the user typed or picked a word, so it is offered first
+	 * next time. Words not in the dictionary are ignored.
+	 *
+	 * @param word
+	 *            The word
+	 */
+	public void recordUse(String word) {
+		if (!trie.contains(word)) {
+			return;
+		}
+		String key = WordTokenizer.normalize(word);
+		synchronized (recentWords) {
+			recentWords.put(key, word.toLowerCase());
+		}
+	}
+
+	/**
+	 * Gets the prefix tree the completions come from
+	 *
+	 * @return The prefix tree
+	 */
+	public PrefixTrie getTrie() {
+		return trie;
+	}
+}
@@ -0,0 +1,191 @@
+package spelling;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A blocked Bloom filter over the words of a dictionary. All the bits for a
+ * word sit in one 64 byte block, so a check touches a single cache line and
+ * can rule a word out without probing the dictionary's hash table.
+ *
+ * @author Inderpreet
+ */
+public class BloomFilter {
+
+	private static final int BLOCK_BITS = 512;
+	private static final int LONGS_PER_BLOCK = BLOCK_BITS / 64;
+
+	private final long[] bits;
+	private final int blocks;
+	private final int hashCount;
+	private final double falsePositiveRate;
+	private final LongAdder checks = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder falsePositives = new LongAdder();
+
+	/**
+	 * Creates an empty filter sized for a number of words
+	 *
+	 * @param expectedWords
+	 *            The number of words that will be added
+	 * @param falsePositiveRate
+	 *            The chance that a word not added still passes, between 0 and
+	 *            1
+	 */
+	public BloomFilter(int expectedWords, double falsePositiveRate) {
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException(
+					"False positive rate must be between 0 and 1");
+		}
+		this.falsePositiveRate = falsePositiveRate;
+		double ln2 = Math.log(2);
+		long bitCount = (long) Math.ceil(-Math.max(expectedWords, 1)
+				* Math.log(falsePositiveRate) / (ln2 * ln2));
+		blocks = (int) Math.max(1, (bitCount + BLOCK_BITS - 1) / BLOCK_BITS);
+		bits = new long[blocks * LONGS_PER_BLOCK];
+		hashCount = (int) Math.max(1, Math.min(16,
+				Math.round((double) blocks * BLOCK_BITS / Math.max(expectedWords, 1) * ln2)));
+	}
+
+	/**
+	 * Builds a filter holding every word of a dictionary
+	 *
+	 * @param dictionary
+	 *            The dictionary
+	 * @param falsePositiveRate
+	 *            The chance that a word not in the dictionary still passes
+	 * @return The filter
+	 */
+	public static BloomFilter build(Dictionary dictionary,
+			double falsePositiveRate) {
+		BloomFilter filter = new BloomFilter(dictionary.size(),
+				falsePositiveRate);
+		for (int i = 0; i < dictionary.size(); i++) {
+			filter.add(dictionary.hash(i));
+		}
+		return filter;
+	}
+
+	/**
+	 * Adds a word by its dictionary hash
+	 *
+	 * @param hash
+	 *            The hash of the word
+	 */
+	void add(int hash) {
+		int base = block(hash) * LONGS_PER_BLOCK;
+		int step = step(hash);
+		for (int i = 0, bit = hash; i < hashCount; i++, bit += step) {
+			bits[base + ((bit & (BLOCK_BITS - 1)) >>> 6)] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Returns false if a word is definitely not in the dictionary
+	 *
+	 * @param hash
+	 *            The dictionary hash of the word
+	 * @return Whether the word might be in the dictionary
+	 */
+	boolean mightContain(int hash) {
+		checks.increment();
+		int base = block(hash) * LONGS_PER_BLOCK;
+		int step = step(hash);
+		for (int i = 0, bit = hash; i < hashCount; i++, bit += step) {
+			if ((bits[base + ((bit & (BLOCK_BITS - 1)) >>> 6)] & 1L << bit) == 0) {
+				rejected.increment();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records a word that passed the filter but was not in the dictionary
+	 */
+	void recordFalsePositive() {
+		falsePositives.increment();
+	}
+
+	/**
+	 * Picks the block for a hash
+	 *
+	 * @param hash
+	 *            The hash
+	 * @return The block index
+	 */
+	private int block(int hash) {
+		return (int) (((Dictionary.mix(hash) & 0xFFFFFFFFL) * blocks) >>> 32);
+	}
+
+	/**
+	 * Gets the distance between the bits of a hash within its block
+	 *
+	 * @param hash
+	 *            The hash
+	 * @return An odd step
+	 */
+	private static int step(int hash) {
+		return (hash >>> 16 | hash << 16) * 0x9E3779B9 | 1;
+	}
+
+	/**
+	 * Gets the number of words checked against the filter
+	 *
+	 * @return The number of checks
+	 */
+	public long getChecks() {
+		return checks.sum();
+	}
+
+	/**
+	 * Gets the number of words the filter ruled out without a dictionary probe
+	 *
+	 * @return The number of definite misses
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Gets the number of words that passed the filter but were not in the
+	 * dictionary
+	 *
+	 * @return The number of false positives
+	 */
+	public long getFalsePositives() {
+		return falsePositives.sum();
+	}
+
+	/**
+	 * Gets the false positive rate the filter was sized for
+	 *
+	 * @return The configured false positive rate
+	 */
+	public double getFalsePositiveRate() {
+		return falsePositiveRate;
+	}
+
+	/**
+	 * Gets the size of the filter
+	 *
+	 * @return The size in bytes
+	 */
+	public int getSizeInBytes() {
+		return bits.length * 8;
+	}
+
+	/**
+	 * Resets the counters
+	 */
+	public void resetCounters() {
+		checks.reset();
+		rejected.reset();
+		falsePositives.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "Bloom filter: " + getChecks() + " checked, " + getRejected()
+				+ " ruled out, " + getFalsePositives() + " false positives";
+	}
+}
@@ -0,0 +1,115 @@
+package spelling;
+
+import javax.swing.Timer;
+
+import metrics.EditorMetrics;
+
+/**
+ * Runs spell-check work once the user stops typing. Every request while work
+ * is pending replaces the one before it, and the work runs when no request
+ * has come for the idle delay, or at the latest the maximum delay after the
+ * first pending request so a long burst of typing is still checked as it
+ * goes. The work runs on the event dispatch thread from a Swing timer, so
+ * requests cost nothing more than restarting the timer.
+ *
+ * @author Inderpreet
+ */
+public class CheckScheduler {
+
+	/**
+	 * How long the user has to stop typing before pending work runs, in
+	 * milliseconds. Set with -Ddragyn.checkDelay=150
+	 */
+	public static final int IDLE_DELAY = Integer.getInteger(
+			"dragyn.checkDelay", 150);
+
+	/**
+	 * The longest pending work waits while the user keeps typing, in
+	 * milliseconds. Set with -Ddragyn.checkMaxDelay=1000
+	 */
+	public static final int MAX_DELAY = Integer.getInteger(
+			"dragyn.checkMaxDelay", 1000);
+
+	private final Runnable work;
+	private final int idleDelay;
+	private final int maxDelay;
+	private final Timer timer;
+	private boolean pending = false;
+	private long firstRequest;
+
+	/**
+	 * Creates a scheduler with the configured delays
+	 *
+	 * @param work
+	 *            The work to run
+	 */
+	public CheckScheduler(Runnable work) {
+		this(work, IDLE_DELAY, MAX_DELAY);
+	}
+
+	/**
+	 * Creates a scheduler
+	 *
+	 * @param work
+	 *            The work to run
+	 * @param idleDelay
+	 *            How long to wait after the last request, in milliseconds
+	 * @param maxDelay
+	 *            How long to wait at most after the first request, in
+	 *            milliseconds
+	 */
+	public CheckScheduler(Runnable work, int idleDelay, int maxDelay) {
+		this.work = work;
+		this.idleDelay = Math.max(0, idleDelay);
+		this.maxDelay = Math.max(this.idleDelay, maxDelay);
+		timer = new Timer(this.idleDelay, event -> run());
+		timer.setRepeats(false);
+	}
+
+	/**
+	 * Asks for the work to run, replacing any request still pending
+	 */
+	public void request() {
+		long now = System.nanoTime();
+		if (pending) {
+			EditorMetrics.recordCheckRequest(true);
+		} else {
+			EditorMetrics.recordCheckRequest(false);
+			pending = true;
+			firstRequest = now;
+		}
+		long waited = (now - firstRequest) / 1000000;
+		timer.setInitialDelay((int) Math.max(0,
+				Math.min(idleDelay, maxDelay - waited)));
+		timer.restart();
+	}
+
+	/**
+	 * Drops the pending work without running it
+	 */
+	public void cancel() {
+		timer.stop();
+		pending = false;
+	}
+
+	/**
+	 * Returns true if work is waiting to run
+	 *
+	 * @return Whether a request is pending
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * Runs the pending work
+	 */
+	private void run() {
+		if (!pending) {
+			return;
+		}
+		pending = false;
+		EditorMetrics.CHECK_DELAY.recordSince(firstRequest);
+		work.run();
+	}
+}
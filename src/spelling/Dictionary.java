@@ -1,56 +1,861 @@
 package spelling;
 
-import java.io.BufferedReader;
+import file.CacheDirectory;
+
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 
 /**
+ * A word list stored as packed characters and indexed by an open-addressing
+ * hash table so lookups are O(1) and do not create Strings. The table is read
+ * straight out of a memory-mapped file produced by {@link DictionaryCompiler},
+ * so nothing is copied onto the heap and editors on the same machine share
+ * the pages. A dictionary never changes once opened and is safe to share
+ * between threads. An optional {@link BloomFilter} can sit in front of the
+ * table.
+ * <p>
+ * A dictionary can also be a Hunspell style list of stems with flags, read
+ * from name.dic and name.aff. Words missing from the table are then accepted
+ * if {@link AffixRules} can strip an affix that the remaining stem allows,
+ * and the words listed by {@link #getWord(int)} are the stems.
  *
  * @author Inderpreet
  */
 public class Dictionary {
 
-	private final ArrayList<String> dictionary;
-	private BufferedReader bufferedReader;
+	public static final String DEFAULT_NAME = "dict";
+
+	static final int MAGIC = 0x44524744;
+	static final int VERSION = 4;
+	static final int HEADER_SIZE = 36;
+
+	/**
+	 * Where the header keeps a fingerprint of the word list a dictionary was
+	 * compiled from, to tell when the cached copy is out of date
+	 */
+	static final int SOURCE_OFFSET = 28;
+	static final int EMPTY_SLOT = -1;
+	static final int FNV_OFFSET = 0x811C9DC5;
+	static final int FNV_PRIME = 0x01000193;
+	static final long FNV_OFFSET_64 = 0xCBF29CE484222325L;
+	static final long FNV_PRIME_64 = 0x100000001B3L;
+
+	private final CharBuffer characters;
+	private final IntBuffer offsets;
+	private final IntBuffer slots;
+	private final IntBuffer flagOffsets;
+	private final CharBuffer flags;
+	private final AffixRules affixRules;
+	private final int size;
+	private final int checksum;
+	private final int sizeInBytes;
+	private volatile BloomFilter bloomFilter;
+	private volatile UserDictionary userDictionary;
+	private ArrayList<String> dictionary;
 
 	public Dictionary() {
-		dictionary = new ArrayList<String>();
-		initializeReader();
-		readFromFile();
+		this(DEFAULT_NAME);
+	}
+
+	/**
+	 * Opens the dictionary with the given resource name
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 */
+	public Dictionary(String name) {
+		this(loadBuffer(name), AffixRules.load(name));
+	}
+
+	/**
+	 * Opens the dictionary with the given resource name, failing rather than
+	 * falling back to an empty dictionary if its word list cannot be read
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return The dictionary
+	 * @throws IOException
+	 *             If there is no such word list or it could not be read
+	 */
+	public static Dictionary load(String name) throws IOException {
+		return new Dictionary(openBuffer(name), AffixRules.load(name));
+	}
+
+	/**
+	 * Reads a dictionary from a buffer in the compiled format
+	 *
+	 * @param buffer
+	 *            The compiled dictionary
+	 */
+	public Dictionary(ByteBuffer buffer) {
+		this(buffer, null);
 	}
 
 	/**
-	 * Gets the dictionary
+	 * Reads a dictionary of stems from a buffer in the compiled format
+	 *
+	 * @param buffer
+	 *            The compiled dictionary
+	 * @param affixRules
+	 *            The rules for the flags of the stems, or null to accept only
+	 *            the words in the table
+	 */
+	public Dictionary(ByteBuffer buffer, AffixRules affixRules) {
+		if (!isCompiled(buffer)) {
+			throw new IllegalArgumentException("Not a compiled dictionary");
+		}
+		size = buffer.getInt(8);
+		int characterCount = buffer.getInt(12);
+		int slotCount = buffer.getInt(16);
+		checksum = buffer.getInt(20);
+		sizeInBytes = buffer.capacity();
+		int flagCount = buffer.getInt(24);
+		int position = HEADER_SIZE;
+		slots = section(buffer, position, slotCount * 4).asIntBuffer();
+		position += slotCount * 4;
+		offsets = section(buffer, position, (size + 1) * 4).asIntBuffer();
+		position += (size + 1) * 4;
+		if (flagCount > 0) {
+			flagOffsets = section(buffer, position, (size + 1) * 4)
+					.asIntBuffer();
+			position += (size + 1) * 4;
+		} else {
+			flagOffsets = null;
+		}
+		characters = section(buffer, position, characterCount * 2)
+				.asCharBuffer();
+		position += characterCount * 2;
+		flags = flagCount > 0 ? section(buffer, position, flagCount * 2)
+				.asCharBuffer() : null;
+		this.affixRules = flags != null ? affixRules : null;
+	}
+
+	/**
+	 * Gets the dictionary as a list of Strings. The list is only built the
+	 * first time it is requested.
 	 *
 	 * @return the dictionary
 	 */
-	public ArrayList<String> getDictionary() {
+	public synchronized ArrayList<String> getDictionary() {
+		if (dictionary == null) {
+			dictionary = new ArrayList<String>(size);
+			for (int i = 0; i < size; i++) {
+				dictionary.add(getWord(i));
+			}
+		}
 		return dictionary;
 	}
 
 	/**
-	 * Initializes the bufferedReader variable
+	 * Gets the number of words in the dictionary
+	 *
+	 * @return The number of words
 	 */
-	private void initializeReader() {
-		InputStream inputStream = getClass().getResourceAsStream("dict.txt");
-		bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
+	public int size() {
+		return size;
 	}
 
 	/**
-	 * Reads strings from a file
+	 * Gets a number identifying the words in the dictionary, so data built
+	 * from it can tell when it is out of date
 	 *
-	 * @return ArrayList the list of words from the file
+	 * @return The checksum of the words
 	 */
-	private void readFromFile() {
-		String line;
-		try {
-			while ((line = bufferedReader.readLine()) != null) {
-				dictionary.add(line);
+	public int getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * Gets roughly how much memory the dictionary takes, counting its mapped
+	 * tables and any Bloom filter
+	 *
+	 * @return The size in bytes
+	 */
+	public long getSizeInBytes() {
+		BloomFilter filter = bloomFilter;
+		return sizeInBytes + (filter == null ? 0 : filter.getSizeInBytes());
+	}
+
+	/**
+	 * Gets a word by its position in the dictionary
+	 *
+	 * @param index
+	 *            The position of the word
+	 * @return The word
+	 */
+	public String getWord(int index) {
+		int offset = offsets.get(index);
+		char[] word = new char[offsets.get(index + 1) - offset];
+		for (int i = 0; i < word.length; i++) {
+			word[i] = characters.get(offset + i);
+		}
+		return new String(word);
+	}
+
+	/**
+	 * Returns true if the word is in the dictionary, ignoring case,
+	 * whitespace, punctuation and digits
+	 *
+	 * @param word
+	 *            The word to look up
+	 * @return Whether the word is in the dictionary
+	 */
+	public boolean contains(CharSequence word) {
+		return contains(word, 0, word.length());
+	}
+
+	/**
+	 * Returns true if part of a sequence is in the dictionary, ignoring case,
+	 * whitespace, punctuation and digits
+	 *
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @return Whether the word is in the dictionary
+	 */
+	public boolean contains(CharSequence text, int start, int end) {
+		return contains(text, start, end, null);
+	}
+
+	/**
+	 * Returns true if part of a sequence is in the dictionary, ignoring case,
+	 * whitespace, punctuation and digits. Verdicts are looked up in and added
+	 * to a cache, which the caller must clear if it switches dictionaries.
+	 *
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @param cache
+	 *            The cache of recent verdicts, or null
+	 * @return Whether the word is in the dictionary
+	 */
+	public boolean contains(CharSequence text, int start, int end,
+			VerdictCache cache) {
+		int hash = FNV_OFFSET;
+		long longHash = FNV_OFFSET_64;
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (WordTokenizer.classify(c) == WordTokenizer.LETTER) {
+				c = Character.toLowerCase(c);
+				hash = (hash ^ c) * FNV_PRIME;
+				longHash = (longHash ^ c) * FNV_PRIME_64;
+				length++;
+			}
+		}
+		if (cache != null) {
+			int verdict = cache.get(longHash);
+			if (verdict == VerdictCache.CORRECT) {
+				return true;
 			}
+			if (verdict == VerdictCache.MISSPELLED) {
+				// The user may have added the word since it was cached
+				return containsUserWord(hash, text, start, end, length);
+			}
+		}
+		boolean found = probe(hash, text, start, end, length)
+				|| affixRules != null && length > 0
+				&& affixRules.accepts(this, letters(text, start, end, length));
+		if (cache != null) {
+			cache.put(longHash, found);
+		}
+		return found || containsUserWord(hash, text, start, end, length);
+	}
+
+	/**
+	 * Finds the position of a word in the dictionary, ignoring case,
+	 * whitespace, punctuation and digits. Words made with affix rules or
+	 * added by the user have no position.
+	 *
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @return The position of the word, or -1 if it is not in the table
+	 */
+	public int indexOf(CharSequence text, int start, int end) {
+		int hash = FNV_OFFSET;
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (WordTokenizer.classify(c) == WordTokenizer.LETTER) {
+				hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+				length++;
+			}
+		}
+		return length == 0 ? EMPTY_SLOT : indexOf(hash, text, start, end,
+				length);
+	}
+
+	/**
+	 * Looks a word up in the user dictionary
+	 *
+	 * @param hash
+	 *            The hash of the word's letters
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @param length
+	 *            The number of letters in the word
+	 * @return Whether the user has added the word
+	 */
+	private boolean containsUserWord(int hash, CharSequence text, int start,
+			int end, int length) {
+		UserDictionary words = userDictionary;
+		return words != null && words.contains(hash, text, start, end, length);
+	}
+
+	/**
+	 * Looks a word up in the Bloom filter and hash table
+	 *
+	 * @param hash
+	 *            The hash of the word's letters
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @param length
+	 *            The number of letters in the word
+	 * @return Whether the word is in the dictionary
+	 */
+	private boolean probe(int hash, CharSequence text, int start, int end,
+			int length) {
+		return indexOf(hash, text, start, end, length) != EMPTY_SLOT;
+	}
+
+	/**
+	 * Finds a word in the hash table, checking the Bloom filter first
+	 *
+	 * @param hash
+	 *            The hash of the word's letters
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @param length
+	 *            The number of letters in the word
+	 * @return The position of the word, or EMPTY_SLOT if it is missing
+	 */
+	private int indexOf(int hash, CharSequence text, int start, int end,
+			int length) {
+		BloomFilter filter = bloomFilter;
+		if (filter != null && !filter.mightContain(hash)) {
+			return EMPTY_SLOT;
+		}
+		int mask = slots.capacity() - 1;
+		for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+			int index = slots.get(slot);
+			if (index == EMPTY_SLOT) {
+				if (filter != null) {
+					filter.recordFalsePositive();
+				}
+				return EMPTY_SLOT;
+			}
+			if (matches(index, text, start, end, length)) {
+				return index;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a stem is in the dictionary with a flag
+	 *
+	 * @param stem
+	 *            The lowercase letters of the stem
+	 * @param flag
+	 *            The flag
+	 * @return Whether the stem allows the affixes with that flag
+	 */
+	boolean hasFlag(String stem, char flag) {
+		if (flags == null) {
+			return false;
+		}
+		int hash = FNV_OFFSET;
+		for (int i = 0; i < stem.length(); i++) {
+			hash = (hash ^ stem.charAt(i)) * FNV_PRIME;
+		}
+		int index = indexOf(hash, stem, 0, stem.length(), stem.length());
+		if (index == EMPTY_SLOT) {
+			return false;
+		}
+		for (int i = flagOffsets.get(index); i < flagOffsets.get(index + 1); i++) {
+			if (flags.get(i) == flag) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the affix rules used for words missing from the table
+	 *
+	 * @return The rules, or null if only the words in the table are accepted
+	 */
+	public AffixRules getAffixRules() {
+		return affixRules;
+	}
+
+	/**
+	 * Copies the lowercase letters of part of a sequence
+	 *
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @param length
+	 *            The number of letters in the word
+	 * @return The letters
+	 */
+	private static String letters(CharSequence text, int start, int end,
+			int length) {
+		char[] letters = new char[length];
+		int position = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (WordTokenizer.classify(c) == WordTokenizer.LETTER) {
+				letters[position++] = Character.toLowerCase(c);
+			}
+		}
+		return new String(letters);
+	}
+
+	/**
+	 * Puts a Bloom filter in front of the hash table, so words that are
+	 * certainly missing are rejected without a probe
+	 *
+	 * @param falsePositiveRate
+	 *            The chance that a missing word still reaches the hash table
+	 */
+	public void enableBloomFilter(double falsePositiveRate) {
+		bloomFilter = BloomFilter.build(this, falsePositiveRate);
+	}
+
+	/**
+	 * Removes the Bloom filter
+	 */
+	public void disableBloomFilter() {
+		bloomFilter = null;
+	}
+
+	/**
+	 * Gets the Bloom filter in front of the hash table
+	 *
+	 * @return The filter, or null if there is none
+	 */
+	public BloomFilter getBloomFilter() {
+		return bloomFilter;
+	}
+
+	/**
+	 * Accepts the words of a user dictionary as well as this dictionary's own.
+	 * Words the user adds later are picked up straight away.
+	 *
+	 * @param userDictionary
+	 *            The user dictionary, or null for none
+	 */
+	public void setUserDictionary(UserDictionary userDictionary) {
+		this.userDictionary = userDictionary;
+	}
+
+	/**
+	 * Gets the user dictionary whose words are also accepted
+	 *
+	 * @return The user dictionary, or null if there is none
+	 */
+	public UserDictionary getUserDictionary() {
+		return userDictionary;
+	}
+
+	/**
+	 * Hashes a stored word the same way lookups hash their letters
+	 *
+	 * @param index
+	 *            The position of the word
+	 * @return The hash of the word
+	 */
+	int hash(int index) {
+		int hash = FNV_OFFSET;
+		for (int i = offsets.get(index); i < offsets.get(index + 1); i++) {
+			hash = (hash ^ characters.get(i)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Compares a stored word against part of a sequence
+	 *
+	 * @param index
+	 *            The position of the stored word
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @param length
+	 *            The number of letters in the word
+	 * @return Whether they are equal, ignoring anything in the sequence
+	 *         that is not a letter
+	 */
+	private boolean matches(int index, CharSequence text, int start, int end,
+			int length) {
+		int offset = offsets.get(index);
+		if (offsets.get(index + 1) - offset != length) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (WordTokenizer.classify(c) == WordTokenizer.LETTER
+					&& characters.get(offset++) != Character.toLowerCase(c)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Scrambles a hash so neighbouring values land in different slots
+	 *
+	 * @param hash
+	 *            The hash to scramble
+	 * @return The scrambled hash
+	 */
+	static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		return hash;
+	}
+
+	/**
+	 * Returns true if a buffer holds a dictionary in the current compiled
+	 * format
+	 *
+	 * @param buffer
+	 *            The buffer to check
+	 * @return Whether the buffer can be read
+	 */
+	private static boolean isCompiled(ByteBuffer buffer) {
+		return buffer.capacity() >= HEADER_SIZE && buffer.getInt(0) == MAGIC
+				&& buffer.getInt(4) == VERSION;
+	}
+
+	/**
+	 * Gets a read only view of part of a buffer
+	 *
+	 * @param buffer
+	 *            The whole buffer
+	 * @param position
+	 *            Where the part starts
+	 * @param length
+	 *            The length of the part in bytes
+	 * @return The part of the buffer
+	 */
+	static ByteBuffer section(ByteBuffer buffer, int position,
+			int length) {
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(position);
+		duplicate.limit(position + length);
+		return duplicate.slice();
+	}
+
+	/**
+	 * Finds the compiled form of a word list and maps it into memory. A
+	 * compiled dictionary on the class path is used directly, one inside a
+	 * jar is copied to the cache directory first and a missing one is
+	 * compiled from the plain word list.
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return The compiled dictionary, which is empty if the word list could
+	 *         not be read
+	 */
+	private static ByteBuffer loadBuffer(String name) {
+		try {
+			return openBuffer(name);
 		} catch (IOException ex) {
 			System.out.println("Could not load dictionary");
+			return DictionaryCompiler.empty();
+		}
+	}
+
+	/**
+	 * Finds the compiled form of a word list like
+	 * {@link #loadBuffer(String)}, loading it into memory if it cannot be
+	 * mapped
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return The compiled dictionary
+	 * @throws IOException
+	 *             If the word list could not be read
+	 */
+	private static ByteBuffer openBuffer(String name) throws IOException {
+		URL resource = Dictionary.class.getResource(name + ".bin");
+		if (resource == null
+				&& Dictionary.class.getResource(name + ".txt") == null
+				&& Dictionary.class.getResource(name + ".dic") == null) {
+			throw new IOException("Missing word list " + name);
+		}
+		try {
+			if (resource != null && "file".equals(resource.getProtocol())) {
+				return map(new File(resource.toURI()));
+			}
+			File cached = CacheDirectory.getFile(name + ".bin");
+			if (resource != null) {
+				if (!isCopyOf(cached, resource)) {
+					extract(resource, cached);
+				}
+				return map(cached);
+			}
+			long source = sourceFingerprint(name);
+			ByteBuffer header = readHeader(cached);
+			if (header == null || !isCompiled(header)
+					|| header.getLong(SOURCE_OFFSET) != source) {
+				// Missing, left behind by an older version of the editor or
+				// compiled from a word list that has since changed
+				ByteBuffer buffer = compileWordList(name);
+				buffer.putLong(SOURCE_OFFSET, source);
+				DictionaryCompiler.write(buffer, cached);
+			}
+			return map(cached);
+		} catch (IOException | URISyntaxException ex) {
+			System.out.println("Could not map dictionary, loading into memory");
+		}
+		return compileWordList(name);
+	}
+
+	/**
+	 * Fingerprints the word list a dictionary is compiled from by the length
+	 * and modification time of its files, which is enough to tell when it
+	 * changes without reading it
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return The fingerprint
+	 * @throws IOException
+	 *             If a file of the word list could not be looked at
+	 * @throws URISyntaxException
+	 *             If a file of the word list has an unusable location
+	 */
+	private static long sourceFingerprint(String name) throws IOException,
+			URISyntaxException {
+		long fingerprint = FNV_OFFSET_64;
+		for (String extension : new String[] { ".txt", ".dic", ".aff" }) {
+			URL source = Dictionary.class.getResource(name + extension);
+			if (source != null) {
+				fingerprint = fingerprint(fingerprint, source);
+			}
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Folds the length and modification time of a file into a fingerprint
+	 *
+	 * @param fingerprint
+	 *            The fingerprint so far
+	 * @param source
+	 *            The location of the file
+	 * @return The new fingerprint
+	 * @throws IOException
+	 *             If the file could not be looked at
+	 * @throws URISyntaxException
+	 *             If the file has an unusable location
+	 */
+	static long fingerprint(long fingerprint, URL source) throws IOException,
+			URISyntaxException {
+		long length, modified;
+		if ("file".equals(source.getProtocol())) {
+			File file = new File(source.toURI());
+			length = file.length();
+			modified = file.lastModified();
+		} else {
+			URLConnection connection = source.openConnection();
+			length = connection.getContentLengthLong();
+			modified = connection.getLastModified();
+		}
+		fingerprint = (fingerprint ^ length) * FNV_PRIME_64;
+		return (fingerprint ^ modified) * FNV_PRIME_64;
+	}
+
+	/**
+	 * Returns true if a file is a copy of a compiled dictionary, going by its
+	 * length and its header, which holds a checksum of the words
+	 *
+	 * @param file
+	 *            The file
+	 * @param resource
+	 *            The compiled dictionary
+	 * @return Whether the file can be used in place of the resource
+	 * @throws IOException
+	 *             If the resource could not be read
+	 */
+	private static boolean isCopyOf(File file, URL resource)
+			throws IOException {
+		ByteBuffer header = readHeader(file);
+		if (header == null) {
+			return false;
+		}
+		byte[] expected = new byte[HEADER_SIZE];
+		URLConnection connection = resource.openConnection();
+		try (InputStream inputStream = connection.getInputStream()) {
+			int read = 0;
+			while (read < expected.length) {
+				int count = inputStream.read(expected, read, expected.length
+						- read);
+				if (count < 0) {
+					return false;
+				}
+				read += count;
+			}
+		}
+		return file.length() == connection.getContentLengthLong()
+				&& header.equals(ByteBuffer.wrap(expected));
+	}
+
+	/**
+	 * Reads the header of a compiled dictionary without mapping the file, so
+	 * an out of date file can still be replaced where mapped files are locked
+	 *
+	 * @param file
+	 *            The file
+	 * @return The header, or null if the file is missing or too short
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static ByteBuffer readHeader(File file) throws IOException {
+		return readHeader(file, HEADER_SIZE);
+	}
+
+	/**
+	 * Reads the header of a file in the cache directory without mapping it
+	 *
+	 * @param file
+	 *            The file
+	 * @param size
+	 *            The size of the header
+	 * @return The header, or null if the file is missing or too short
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	static ByteBuffer readHeader(File file, int size) throws IOException {
+		if (!file.isFile() || file.length() < size) {
+			return null;
+		}
+		ByteBuffer header = ByteBuffer.allocate(size);
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					break;
+				}
+			}
+		}
+		header.flip();
+		return header.remaining() == size ? header : null;
+	}
+
+	/**
+	 * Compiles the plain word list with the given name, or the Hunspell
+	 * dictionary if there is no plain list
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return The compiled dictionary
+	 * @throws IOException
+	 *             If the word list could not be read
+	 */
+	private static ByteBuffer compileWordList(String name) throws IOException {
+		InputStream inputStream = Dictionary.class.getResourceAsStream(name
+				+ ".txt");
+		if (inputStream != null) {
+			try {
+				return DictionaryCompiler.compile(inputStream);
+			} finally {
+				inputStream.close();
+			}
+		}
+		AffixRules affixRules = AffixRules.load(name);
+		inputStream = Dictionary.class.getResourceAsStream(name + ".dic");
+		if (inputStream == null || affixRules == null) {
+			throw new IOException("Missing word list " + name);
+		}
+		try {
+			return DictionaryCompiler.compileHunspell(inputStream, affixRules);
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Copies a compiled dictionary out of a jar so it can be mapped
+	 *
+	 * @param resource
+	 *            The compiled dictionary
+	 * @param file
+	 *            Where to copy it
+	 * @throws IOException
+	 *             If the copy failed
+	 */
+	private static void extract(URL resource, File file) throws IOException {
+		Path tempFile = DictionaryCompiler.createTempFile(file);
+		try {
+			try (InputStream inputStream = resource.openStream()) {
+				Files.copy(inputStream, tempFile,
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			Files.move(tempFile, file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Maps a file into memory as read only
+	 *
+	 * @param file
+	 *            The file to map
+	 * @return The mapped file
+	 * @throws IOException
+	 *             If the file could not be mapped
+	 */
+	static ByteBuffer map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
 		}
 	}
 }
@@ -0,0 +1,330 @@
+package spelling;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+
+/**
+ * Turns a plain word list, or a Hunspell dictionary of stems and flags, into
+ * the binary format read by {@link Dictionary}. Run at build time as
+ * <code>java spelling.DictionaryCompiler dict.txt dict.bin</code> or
+ * <code>java spelling.DictionaryCompiler en.dic en.aff en.bin</code>
+ *
+ * @author Inderpreet
+ */
+public class DictionaryCompiler {
+
+	private char[] characters = new char[1 << 20];
+	private int[] offsets = new int[1 << 16];
+	private int[] slots;
+	private int size;
+	private int characterCount;
+	private char[] flags = new char[0];
+	private int[] flagOffsets;
+	private int flagCount;
+
+	public static void main(String[] args) {
+		if (args.length != 2 && args.length != 3) {
+			System.out.println("Usage: DictionaryCompiler <word list> <output>");
+			System.out.println("       DictionaryCompiler <dic> <aff> <output>");
+			System.exit(1);
+		}
+		try (InputStream inputStream = new FileInputStream(args[0])) {
+			if (args.length == 2) {
+				write(compile(inputStream), new File(args[1]));
+			} else {
+				AffixRules affixRules;
+				try (InputStream affixStream = new FileInputStream(args[1])) {
+					affixRules = new AffixRules(affixStream);
+				}
+				write(compileHunspell(inputStream, affixRules), new File(
+						args[2]));
+			}
+		} catch (IOException ioe) {
+			System.out.println("Could not compile dictionary: "
+					+ ioe.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compiles a word list with one word per line. Each word is stored by its
+	 * lowercase letters, the way words are looked up, and words that only
+	 * differ in case or punctuation are stored once.
+	 *
+	 * @param inputStream
+	 *            The word list
+	 * @return A buffer in the binary dictionary format
+	 * @throws IOException
+	 *             If the word list could not be read
+	 */
+	public static ByteBuffer compile(InputStream inputStream)
+			throws IOException {
+		DictionaryCompiler compiler = new DictionaryCompiler();
+		BufferedReader bufferedReader = new BufferedReader(
+				new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+		HashSet<String> words = new HashSet<String>();
+		String line;
+		while ((line = bufferedReader.readLine()) != null) {
+			String word = WordTokenizer.normalize(line);
+			if (!word.isEmpty() && words.add(word)) {
+				compiler.addWord(word);
+			}
+		}
+		compiler.buildSlots();
+		return compiler.toBuffer();
+	}
+
+	/**
+	 * Compiles a Hunspell dictionary file. Each stem is stored by its
+	 * lowercase letters along with its flags, and stems listed more than once
+	 * have their flags merged.
+	 *
+	 * @param inputStream
+	 *            The dictionary file
+	 * @param affixRules
+	 *            The affix file that goes with it
+	 * @return A buffer in the binary dictionary format
+	 * @throws IOException
+	 *             If the dictionary file could not be read
+	 */
+	public static ByteBuffer compileHunspell(InputStream inputStream,
+			AffixRules affixRules) throws IOException {
+		DictionaryCompiler compiler = new DictionaryCompiler();
+		BufferedReader bufferedReader = new BufferedReader(
+				new InputStreamReader(inputStream, affixRules.getCharset()));
+		HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+		ArrayList<StringBuilder> stemFlags = new ArrayList<StringBuilder>();
+		String line = bufferedReader.readLine();
+		if (line != null && !line.trim().matches("\\d+")) {
+			// The count on the first line is optional
+			compiler.addStem(line, affixRules, indexes, stemFlags);
+		}
+		while ((line = bufferedReader.readLine()) != null) {
+			compiler.addStem(line, affixRules, indexes, stemFlags);
+		}
+		compiler.flagOffsets = new int[compiler.size + 1];
+		StringBuilder packed = new StringBuilder();
+		for (int i = 0; i < compiler.size; i++) {
+			compiler.flagOffsets[i] = packed.length();
+			packed.append(stemFlags.get(i));
+		}
+		compiler.flagOffsets[compiler.size] = packed.length();
+		compiler.flags = packed.toString().toCharArray();
+		compiler.flagCount = compiler.flags.length;
+		compiler.buildSlots();
+		return compiler.toBuffer();
+	}
+
+	/**
+	 * Compiles a dictionary without any words
+	 *
+	 * @return A buffer in the binary dictionary format
+	 */
+	static ByteBuffer empty() {
+		DictionaryCompiler compiler = new DictionaryCompiler();
+		compiler.buildSlots();
+		return compiler.toBuffer();
+	}
+
+	/**
+	 * Writes a compiled dictionary to a file. The data goes to a temporary
+	 * file of its own first so other editors never map a half written
+	 * dictionary, even when several write the same file at once.
+	 *
+	 * @param buffer
+	 *            The compiled dictionary
+	 * @param file
+	 *            The file to write to
+	 * @throws IOException
+	 *             If the file could not be written
+	 */
+	public static void write(ByteBuffer buffer, File file) throws IOException {
+		Path tempFile = createTempFile(file);
+		try {
+			try (FileOutputStream outputStream = new FileOutputStream(
+					tempFile.toFile())) {
+				FileChannel channel = outputStream.getChannel();
+				ByteBuffer duplicate = buffer.duplicate();
+				duplicate.rewind();
+				while (duplicate.hasRemaining()) {
+					channel.write(duplicate);
+				}
+			}
+			Files.move(tempFile, file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Creates a uniquely named temporary file next to a file, so it can be
+	 * moved over the file atomically
+	 *
+	 * @param file
+	 *            The file that will be replaced
+	 * @return The temporary file
+	 * @throws IOException
+	 *             If the temporary file could not be created
+	 */
+	static Path createTempFile(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		return Files.createTempFile(directory.toPath(), file.getName() + ".",
+				".tmp");
+	}
+
+	/**
+	 * Appends a word to the packed character array
+	 *
+	 * @param word
+	 *            The word to add
+	 */
+	private void addWord(String word) {
+		if (characterCount + word.length() > characters.length) {
+			characters = Arrays.copyOf(characters,
+					Math.max(characters.length * 2, characterCount + word.length()));
+		}
+		if (size + 2 > offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+		word.getChars(0, word.length(), characters, characterCount);
+		offsets[size] = characterCount;
+		characterCount += word.length();
+		size++;
+		offsets[size] = characterCount;
+	}
+
+	/**
+	 * Adds a line of a Hunspell dictionary file
+	 *
+	 * @param line
+	 *            The line, holding a stem and optionally a slash and flags
+	 * @param affixRules
+	 *            The rules, which say how flags are written
+	 * @param indexes
+	 *            The position of each stem added so far
+	 * @param stemFlags
+	 *            The flags of each stem added so far
+	 */
+	private void addStem(String line, AffixRules affixRules,
+			HashMap<String, Integer> indexes, ArrayList<StringBuilder> stemFlags) {
+		// Morphological fields follow whitespace and are not used
+		int whitespace = 0;
+		while (whitespace < line.length()
+				&& !Character.isWhitespace(line.charAt(whitespace))) {
+			whitespace++;
+		}
+		String entry = line.substring(0, whitespace);
+		int slash = entry.indexOf('/');
+		while (slash > 0 && entry.charAt(slash - 1) == '\\') {
+			slash = entry.indexOf('/', slash + 1);
+		}
+		String stem = WordTokenizer.normalize(slash < 0 ? entry : entry
+				.substring(0, slash));
+		if (stem.isEmpty()) {
+			return;
+		}
+		String flagText = slash < 0 ? "" : affixRules.parseFlags(entry
+				.substring(slash + 1));
+		Integer index = indexes.get(stem);
+		if (index == null) {
+			indexes.put(stem, size);
+			stemFlags.add(new StringBuilder(flagText));
+			addWord(stem);
+		} else {
+			stemFlags.get(index).append(flagText);
+		}
+	}
+
+	/**
+	 * Builds the hash table, keeping it at most half full
+	 */
+	private void buildSlots() {
+		int capacity = Integer.highestOneBit(Math.max(size, 1) * 2) * 2;
+		slots = new int[capacity];
+		Arrays.fill(slots, Dictionary.EMPTY_SLOT);
+		int mask = capacity - 1;
+		for (int index = 0; index < size; index++) {
+			int hash = Dictionary.FNV_OFFSET;
+			for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+				hash = (hash ^ characters[i]) * Dictionary.FNV_PRIME;
+			}
+			int slot = Dictionary.mix(hash) & mask;
+			while (slots[slot] != Dictionary.EMPTY_SLOT) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = index;
+		}
+	}
+
+	/**
+	 * Computes a checksum of the packed characters
+	 *
+	 * @return The checksum
+	 */
+	private int checksum() {
+		CRC32 crc = new CRC32();
+		for (int i = 0; i < characterCount; i++) {
+			crc.update(characters[i] >>> 8);
+			crc.update(characters[i]);
+		}
+		for (int i = 0; i < flagCount; i++) {
+			crc.update(flags[i] >>> 8);
+			crc.update(flags[i]);
+		}
+		crc.update(size);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Lays the header, hash table, offsets, characters and any flags out in
+	 * one buffer
+	 *
+	 * @return The compiled dictionary
+	 */
+	private ByteBuffer toBuffer() {
+		int flagOffsetCount = flagCount > 0 ? size + 1 : 0;
+		ByteBuffer buffer = ByteBuffer.allocate(Dictionary.HEADER_SIZE
+				+ slots.length * 4 + (size + 1) * 4 + flagOffsetCount * 4
+				+ characterCount * 2 + flagCount * 2);
+		buffer.putInt(Dictionary.MAGIC);
+		buffer.putInt(Dictionary.VERSION);
+		buffer.putInt(size);
+		buffer.putInt(characterCount);
+		buffer.putInt(slots.length);
+		buffer.putInt(checksum());
+		buffer.putInt(flagCount);
+		// The source fingerprint is filled in by whoever knows the source
+		buffer.putLong(0);
+		buffer.asIntBuffer().put(slots);
+		buffer.position(buffer.position() + slots.length * 4);
+		buffer.asIntBuffer().put(offsets, 0, size + 1);
+		buffer.position(buffer.position() + (size + 1) * 4);
+		if (flagOffsetCount > 0) {
+			buffer.asIntBuffer().put(flagOffsets, 0, flagOffsetCount);
+			buffer.position(buffer.position() + flagOffsetCount * 4);
+		}
+		buffer.asCharBuffer().put(characters, 0, characterCount);
+		buffer.position(buffer.position() + characterCount * 2);
+		buffer.asCharBuffer().put(flags, 0, flagCount);
+		buffer.rewind();
+		return buffer;
+	}
+}
@@ -0,0 +1,438 @@
+package spelling;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Loads each dictionary once on a background thread and shares it with every
+ * spell checker in the process. Dictionaries are only loaded when first
+ * asked for. A spell checker retains the dictionary of its language while it
+ * uses it, and once the loaded dictionaries and the suggestion engines,
+ * autocompleters and word frequencies built from them take more memory than
+ * the budget, those nobody retains are dropped, least recently used first. A
+ * dropped dictionary is loaded again if it is asked for later.
+ *
+ * @author Inderpreet
+ */
+public class DictionaryRegistry {
+
+	/**
+	 * The false positive rate of the Bloom filter put in front of each loaded
+	 * dictionary, or 0 for no filter. Set with -Ddragyn.bloomFilter=0.01
+	 */
+	public static final double BLOOM_FILTER_RATE = parseRate(System
+			.getProperty("dragyn.bloomFilter", "0"));
+
+	/**
+	 * How much memory loaded dictionaries may take before idle ones are
+	 * dropped, in megabytes. Set with -Ddragyn.dictionaryBudget=256
+	 */
+	public static final long MEMORY_BUDGET = Long.getLong(
+			"dragyn.dictionaryBudget", 256) << 20;
+
+	private static final String[] EXTENSIONS = { ".txt", ".bin", ".dic" };
+
+	private static final ConcurrentHashMap<String, CompletableFuture<Dictionary>> dictionaries = new ConcurrentHashMap<String, CompletableFuture<Dictionary>>();
+
+	private static final ConcurrentHashMap<String, CompletableFuture<SuggestionEngine>> suggestionEngines = new ConcurrentHashMap<String, CompletableFuture<SuggestionEngine>>();
+
+	private static final ConcurrentHashMap<String, CompletableFuture<Autocompleter>> autocompleters = new ConcurrentHashMap<String, CompletableFuture<Autocompleter>>();
+
+	private static final ConcurrentHashMap<String, CompletableFuture<NgramModel>> ngramModels = new ConcurrentHashMap<String, CompletableFuture<NgramModel>>();
+
+	private static final ConcurrentHashMap<String, Long> lastUsed = new ConcurrentHashMap<String, Long>();
+
+	private static final ConcurrentHashMap<String, Integer> retained = new ConcurrentHashMap<String, Integer>();
+
+	private static final ExecutorService loader = Executors
+			.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Dictionary Loader");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * Gets a dictionary, starting to load it if this is the first request
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return A future completed once the dictionary is loaded
+	 */
+	public static CompletableFuture<Dictionary> getDictionary(String name) {
+		lastUsed.put(name, System.nanoTime());
+		return dictionaries.computeIfAbsent(name,
+				key -> evictAfter(CompletableFuture.supplyAsync(() -> load(key),
+						loader)));
+	}
+
+	/**
+	 * Loads a dictionary on the loader thread
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return The dictionary
+	 */
+	private static Dictionary load(String name) {
+		Dictionary dictionary = new Dictionary(name);
+		dictionary.setUserDictionary(UserDictionary.getDefault());
+		if (BLOOM_FILTER_RATE > 0) {
+			dictionary.enableBloomFilter(BLOOM_FILTER_RATE);
+		}
+		return dictionary;
+	}
+
+	/**
+	 * Reads a false positive rate setting
+	 *
+	 * @param value
+	 *            The setting
+	 * @return The rate, or 0 if it is not a valid rate
+	 */
+	private static double parseRate(String value) {
+		try {
+			double rate = Double.parseDouble(value);
+			return rate > 0 && rate < 1 ? rate : 0;
+		} catch (NumberFormatException nfe) {
+			System.out.println("Invalid Bloom filter rate " + value);
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the default dictionary, starting to load it if needed
+	 *
+	 * @return A future completed once the dictionary is loaded
+	 */
+	public static CompletableFuture<Dictionary> getDefaultDictionary() {
+		return getDictionary(Dictionary.DEFAULT_NAME);
+	}
+
+	/**
+	 * Gets the suggestion engine for a dictionary, starting to build it once
+	 * the dictionary has loaded if this is the first request
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return A future completed once the suggestion engine is ready
+	 */
+	public static CompletableFuture<SuggestionEngine> getSuggestionEngine(
+			String name) {
+		lastUsed.put(name, System.nanoTime());
+		return suggestionEngines.computeIfAbsent(name,
+				key -> evictAfter(getDictionary(key).thenApplyAsync(
+						dictionary -> SuggestionEngine.open(dictionary, key),
+						loader)));
+	}
+
+	/**
+	 * Gets the autocompleter for a dictionary, starting to build it once the
+	 * dictionary has loaded if this is the first request
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return A future completed once the autocompleter is ready
+	 */
+	public static CompletableFuture<Autocompleter> getAutocompleter(String name) {
+		lastUsed.put(name, System.nanoTime());
+		return autocompleters.computeIfAbsent(name,
+				key -> evictAfter(getDictionary(key).thenApplyAsync(
+						Autocompleter::new, loader)));
+	}
+
+	/**
+	 * Gets the word frequencies for a dictionary, starting to load them once
+	 * the dictionary has loaded if this is the first request
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return A future completed once the frequencies are ready
+	 */
+	public static CompletableFuture<NgramModel> getNgramModel(String name) {
+		lastUsed.put(name, System.nanoTime());
+		return ngramModels.computeIfAbsent(name,
+				key -> evictAfter(getDictionary(key).thenApplyAsync(
+						dictionary -> NgramModel.open(dictionary, key), loader)));
+	}
+
+	/**
+	 * Runs a callback on the event dispatch thread once a dictionary is
+	 * loaded, or another if it could not be loaded. A dictionary that could
+	 * not be loaded is forgotten, so asking for it again tries again.
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @param callback
+	 *            The callback to run
+	 * @param whenFailed
+	 *            The callback to run if the dictionary could not be loaded
+	 */
+	public static void whenReady(String name, Consumer<Dictionary> callback,
+			Runnable whenFailed) {
+		CompletableFuture<Dictionary> future = getDictionary(name);
+		future.whenComplete((dictionary, error) -> {
+			if (error != null) {
+				System.out.println("Could not load dictionary " + name);
+				dictionaries.remove(name, future);
+				SwingUtilities.invokeLater(whenFailed);
+			} else {
+				SwingUtilities.invokeLater(() -> callback.accept(dictionary));
+			}
+		});
+	}
+
+	/**
+	 * Keeps a dictionary loaded while it is in use. Each call should be
+	 * matched by a call to {@link #release(String)}.
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 */
+	public static void retain(String name) {
+		retained.merge(name, 1, Integer::sum);
+		lastUsed.put(name, System.nanoTime());
+	}
+
+	/**
+	 * Lets a dictionary be dropped once nothing else retains it
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 */
+	public static void release(String name) {
+		retained.computeIfPresent(name, (key, count) -> count > 1 ? count - 1
+				: null);
+		loader.execute(DictionaryRegistry::evictIdle);
+	}
+
+	/**
+	 * Gets roughly how much memory the loaded dictionaries and everything
+	 * built from them take
+	 *
+	 * @return The size in bytes
+	 */
+	public static long getMemoryUsage() {
+		long total = 0;
+		for (String name : dictionaries.keySet()) {
+			total += getMemoryUsage(name);
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the number of words in a dictionary without loading it or
+	 * counting as a use of it
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return The number of words, or 0 if the dictionary is not loaded
+	 */
+	public static int getLoadedSize(String name) {
+		Dictionary dictionary = getNow(dictionaries, name);
+		return dictionary == null ? 0 : dictionary.size();
+	}
+
+	/**
+	 * Gets the number of words in all of the loaded dictionaries without
+	 * counting as a use of them
+	 *
+	 * @return The number of words
+	 */
+	public static int getLoadedSize() {
+		int total = 0;
+		for (String name : dictionaries.keySet()) {
+			total += getLoadedSize(name);
+		}
+		return total;
+	}
+
+	/**
+	 * Finds the dictionaries that can be loaded, which are the word lists
+	 * next to this class on the class path
+	 *
+	 * @return The names of the dictionaries in alphabetical order
+	 */
+	public static List<String> findNames() {
+		TreeSet<String> names = new TreeSet<String>();
+		names.add(Dictionary.DEFAULT_NAME);
+		String folder = DictionaryRegistry.class.getPackage().getName()
+				.replace('.', '/')
+				+ "/";
+		try {
+			CodeSource codeSource = DictionaryRegistry.class
+					.getProtectionDomain().getCodeSource();
+			URL location = codeSource == null ? null : codeSource.getLocation();
+			File source = location == null ? null : new File(location.toURI());
+			if (source != null && source.isDirectory()) {
+				String[] files = new File(source, folder).list();
+				if (files != null) {
+					for (String file : files) {
+						addName(names, file);
+					}
+				}
+			} else if (source != null && source.isFile()) {
+				try (JarFile jarFile = new JarFile(source)) {
+					Enumeration<JarEntry> entries = jarFile.entries();
+					while (entries.hasMoreElements()) {
+						String entry = entries.nextElement().getName();
+						if (entry.startsWith(folder)
+								&& entry.indexOf('/', folder.length()) < 0) {
+							addName(names, entry.substring(folder.length()));
+						}
+					}
+				}
+			}
+		} catch (IOException | URISyntaxException | SecurityException ex) {
+			System.out.println("Could not list dictionaries");
+		}
+		return new ArrayList<String>(names);
+	}
+
+	/**
+	 * Adds the name of a dictionary file to a set of names
+	 *
+	 * @param names
+	 *            The set of names
+	 * @param file
+	 *            The name of the file, which is ignored if it is not a word
+	 *            list
+	 */
+	private static void addName(TreeSet<String> names, String file) {
+		for (String extension : EXTENSIONS) {
+			if (file.endsWith(extension) && file.length() > extension.length()) {
+				names.add(file.substring(0, file.length() - extension.length()));
+			}
+		}
+	}
+
+	/**
+	 * Gets how much memory one loaded dictionary and everything built from it
+	 * take
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return The size in bytes, not counting anything still loading
+	 */
+	private static long getMemoryUsage(String name) {
+		long total = 0;
+		Dictionary dictionary = getNow(dictionaries, name);
+		if (dictionary != null) {
+			total += dictionary.getSizeInBytes();
+		}
+		SuggestionEngine engine = getNow(suggestionEngines, name);
+		if (engine != null) {
+			total += engine.getSizeInBytes();
+		}
+		Autocompleter autocompleter = getNow(autocompleters, name);
+		if (autocompleter != null) {
+			total += autocompleter.getTrie().getSizeInBytes();
+		}
+		NgramModel model = getNow(ngramModels, name);
+		if (model != null) {
+			total += model.getSizeInBytes();
+		}
+		return total;
+	}
+
+	/**
+	 * Checks the memory budget once a future completes
+	 *
+	 * @param future
+	 *            The future
+	 * @return The same future
+	 */
+	private static <T> CompletableFuture<T> evictAfter(
+			CompletableFuture<T> future) {
+		future.whenCompleteAsync((value, error) -> evictIdle(), loader);
+		return future;
+	}
+
+	/**
+	 * Drops the least recently used dictionaries that nothing retains until
+	 * the rest fit in the memory budget. Dictionaries still loading are never
+	 * dropped.
+	 */
+	private static synchronized void evictIdle() {
+		long total = getMemoryUsage();
+		while (total > MEMORY_BUDGET) {
+			String oldest = null;
+			long oldestUse = Long.MAX_VALUE;
+			for (String name : dictionaries.keySet()) {
+				long use = lastUsed.getOrDefault(name, 0L);
+				if (!retained.containsKey(name) && isIdle(name)
+						&& (oldest == null || use - oldestUse < 0)) {
+					oldest = name;
+					oldestUse = use;
+				}
+			}
+			if (oldest == null) {
+				return;
+			}
+			total -= getMemoryUsage(oldest);
+			suggestionEngines.remove(oldest);
+			autocompleters.remove(oldest);
+			ngramModels.remove(oldest);
+			dictionaries.remove(oldest);
+		}
+	}
+
+	/**
+	 * Returns true if nothing is being loaded or built for a dictionary
+	 *
+	 * @param name
+	 *            The name of the word list without its extension
+	 * @return Whether the dictionary can be dropped
+	 */
+	private static boolean isIdle(String name) {
+		return isDone(dictionaries.get(name))
+				&& isDone(suggestionEngines.get(name))
+				&& isDone(autocompleters.get(name))
+				&& isDone(ngramModels.get(name));
+	}
+
+	/**
+	 * Returns true if a future is missing or done
+	 *
+	 * @param future
+	 *            The future, or null
+	 * @return Whether nothing is running for it
+	 */
+	private static boolean isDone(CompletableFuture<?> future) {
+		return future == null || future.isDone();
+	}
+
+	/**
+	 * Gets a value from a map of futures if it is ready
+	 *
+	 * @param futures
+	 *            The map
+	 * @param name
+	 *            The key
+	 * @return The value, or null if it is missing, loading or failed
+	 */
+	private static <T> T getNow(Map<String, CompletableFuture<T>> futures,
+			String name) {
+		CompletableFuture<T> future = futures.get(name);
+		if (future == null || !future.isDone()
+				|| future.isCompletedExceptionally()) {
+			return null;
+		}
+		return future.join();
+	}
+}
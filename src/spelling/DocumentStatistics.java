@@ -0,0 +1,189 @@
+package spelling;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.DocumentFilter;
+import javax.swing.text.Segment;
+
+/**
+ * Keeps the word, character and line counts of a document as it is edited.
+ * Words are counted like wc, as runs of characters between whitespace. Each
+ * edit only recounts the words it touches, from the start of the word before
+ * it to the end of the word after it, so the counts stay current on large
+ * documents without rescanning them. The removed text is only readable
+ * before it goes, which is why this is a filter rather than a listener.
+ * Characters and lines come straight from the document.
+ *
+ * @author Inderpreet
+ */
+public class DocumentStatistics extends DocumentFilter {
+
+	/**
+	 * Applies an edit to the document
+	 */
+	private interface Edit {
+		void apply() throws BadLocationException;
+	}
+
+	private final AbstractDocument document;
+	private final Segment segment = new Segment();
+	private final WordTokenizer tokenizer = new WordTokenizer();
+	private int wordCount;
+	private Runnable changeListener;
+
+	/**
+	 * Counts the words of a document and keeps them counted
+	 *
+	 * @param document
+	 *            The document, whose filter is replaced
+	 */
+	public DocumentStatistics(AbstractDocument document) {
+		this.document = document;
+		document.readLock();
+		try {
+			wordCount = countWords(document, 0, document.getLength());
+		} catch (BadLocationException ble) {
+			System.out.println("Could not count words");
+		} finally {
+			document.readUnlock();
+		}
+		document.setDocumentFilter(this);
+	}
+
+	/**
+	 * Sets what to run after each edit. It runs on the thread that made the
+	 * edit while the document is still locked.
+	 *
+	 * @param changeListener
+	 *            The listener, or null
+	 */
+	public void setChangeListener(Runnable changeListener) {
+		this.changeListener = changeListener;
+	}
+
+	/**
+	 * Gets the number of words
+	 *
+	 * @return The number of words
+	 */
+	public int getWordCount() {
+		return wordCount;
+	}
+
+	/**
+	 * Gets the number of characters
+	 *
+	 * @return The number of characters
+	 */
+	public int getCharacterCount() {
+		return document.getLength();
+	}
+
+	/**
+	 * Gets the number of lines
+	 *
+	 * @return The number of lines
+	 */
+	public int getLineCount() {
+		return document.getDefaultRootElement().getElementCount();
+	}
+
+	@Override
+	public void insertString(FilterBypass fb, int offset, String text,
+			AttributeSet attributes) throws BadLocationException {
+		edit(fb.getDocument(), offset, 0,
+				() -> fb.insertString(offset, text, attributes));
+	}
+
+	@Override
+	public void remove(FilterBypass fb, int offset, int length)
+			throws BadLocationException {
+		edit(fb.getDocument(), offset, length, () -> fb.remove(offset, length));
+	}
+
+	@Override
+	public void replace(FilterBypass fb, int offset, int length, String text,
+			AttributeSet attributes) throws BadLocationException {
+		edit(fb.getDocument(), offset, length,
+				() -> fb.replace(offset, length, text, attributes));
+	}
+
+	/**
+	 * Applies an edit, recounting the words around it
+	 *
+	 * @param document
+	 *            The document being edited
+	 * @param offset
+	 *            Where the edit starts
+	 * @param length
+	 *            The number of characters the edit removes
+	 * @param edit
+	 *            The edit
+	 * @throws BadLocationException
+	 *             If the edit is outside the document
+	 */
+	private void edit(Document document, int offset, int length, Edit edit)
+			throws BadLocationException {
+		int start = offset, end = offset + length;
+		while (start > 0 && !isSeparator(document, start - 1)) {
+			start--;
+		}
+		while (end < document.getLength() && !isSeparator(document, end)) {
+			end++;
+		}
+		int before = countWords(document, start, end);
+		int oldLength = document.getLength();
+		edit.apply();
+		end += document.getLength() - oldLength;
+		wordCount += countWords(document, start, end) - before;
+		if (changeListener != null) {
+			changeListener.run();
+		}
+	}
+
+	/**
+	 * Counts the words in part of a document
+	 *
+	 * @param document
+	 *            The document
+	 * @param start
+	 *            The start of the part, which should not be inside a word
+	 * @param end
+	 *            The end of the part, which should not be inside a word
+	 * @return The number of words
+	 * @throws BadLocationException
+	 *             If the part is outside the document
+	 */
+	private int countWords(Document document, int start, int end)
+			throws BadLocationException {
+		if (start >= end) {
+			return 0;
+		}
+		document.getText(start, end - start, segment);
+		tokenizer.reset(segment, 0, segment.length());
+		int words = 0;
+		while (tokenizer.next()) {
+			words++;
+		}
+		return words;
+	}
+
+	/**
+	 * Returns true if the character at a position is whitespace
+	 *
+	 * @param document
+	 *            The document
+	 * @param position
+	 *            The position of the character
+	 * @return Whether the character separates words
+	 * @throws BadLocationException
+	 *             If the position is outside the document
+	 */
+	private boolean isSeparator(Document document, int position)
+			throws BadLocationException {
+		document.getText(position, 1, segment);
+		return WordTokenizer.classify(segment.first()) == WordTokenizer.SEPARATOR;
+	}
+}
@@ -0,0 +1,393 @@
+package spelling;
+
+import java.util.Arrays;
+
+import javax.swing.event.CaretEvent;
+import javax.swing.event.CaretListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Segment;
+
+import metrics.EditorMetrics;
+
+/**
+ * Rechecks only the words touching each edit. Edited ranges are collected
+ * while the document changes and checked together once the user stops
+ * typing, so a burst of keystrokes costs one check rather than one each.
+ * Edits made while the whole document is being checked in the background
+ * are left to that check.
+ * The word being typed is held back until the caret leaves it, whether by
+ * typing past it or by moving away, and then checked. When the user has just
+ * finished a word, it is found by scanning back from the caret with
+ * {@link SpellChecker#checkLastWord(int)}.
+ *
+ * @author Inderpreet
+ */
+public class IncrementalSpellChecker implements DocumentListener,
+		CaretListener {
+
+	/**
+	 * Edits larger than this are left to a background check of the whole
+	 * document
+	 */
+	private static final int LARGE_EDIT = 1 << 16;
+
+	private final SpellChecker spellChecker;
+	private final Segment segment = new Segment();
+	private int[] dirtyStarts = new int[8];
+	private int[] dirtyEnds = new int[8];
+	private int dirtyCount = 0;
+	private int largestEdit = 0;
+	private int heldStart = -1;
+	private int heldEnd = -1;
+	private final CheckScheduler scheduler = new CheckScheduler(this::flush);
+
+	public IncrementalSpellChecker(SpellChecker spellChecker) {
+		this.spellChecker = spellChecker;
+	}
+
+	/**
+	 * Gets the scheduler that runs the pending checks
+	 *
+	 * @return The scheduler
+	 */
+	public CheckScheduler getScheduler() {
+		return scheduler;
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		int offset = e.getOffset();
+		int length = e.getLength();
+		for (int i = 0; i < dirtyCount; i++) {
+			dirtyStarts[i] = shiftForInsert(dirtyStarts[i], offset, length);
+			dirtyEnds[i] = shiftForInsert(dirtyEnds[i], offset, length);
+		}
+		if (heldStart >= 0) {
+			heldStart = shiftForInsert(heldStart, offset, length);
+			heldEnd = shiftForInsert(heldEnd, offset, length);
+		}
+		markDirty(offset, offset + length);
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		int offset = e.getOffset();
+		int length = e.getLength();
+		for (int i = 0; i < dirtyCount; i++) {
+			dirtyStarts[i] = shiftForRemove(dirtyStarts[i], offset, length);
+			dirtyEnds[i] = shiftForRemove(dirtyEnds[i], offset, length);
+		}
+		if (heldStart >= 0) {
+			heldStart = shiftForRemove(heldStart, offset, length);
+			heldEnd = shiftForRemove(heldEnd, offset, length);
+		}
+		markDirty(offset, offset);
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+		// Style changes do not affect spelling
+	}
+
+	@Override
+	public void caretUpdate(CaretEvent e) {
+		if (heldStart >= 0 && (e.getDot() < heldStart || e.getDot() > heldEnd)) {
+			scheduler.request();
+		}
+	}
+
+	/**
+	 * Moves a position to account for inserted text
+	 *
+	 * @param position
+	 *            The position to move
+	 * @param offset
+	 *            Where the text was inserted
+	 * @param length
+	 *            How much text was inserted
+	 * @return The new position
+	 */
+	private static int shiftForInsert(int position, int offset, int length) {
+		return position >= offset ? position + length : position;
+	}
+
+	/**
+	 * Moves a position to account for removed text
+	 *
+	 * @param position
+	 *            The position to move
+	 * @param offset
+	 *            Where the text was removed
+	 * @param length
+	 *            How much text was removed
+	 * @return The new position
+	 */
+	private static int shiftForRemove(int position, int offset, int length) {
+		if (position >= offset + length) {
+			return position - length;
+		}
+		return Math.min(position, offset);
+	}
+
+	/**
+	 * Records an edited range and schedules a recheck
+	 *
+	 * @param start
+	 *            The start of the edited range
+	 * @param end
+	 *            The end of the edited range
+	 */
+	private void markDirty(int start, int end) {
+		largestEdit = Math.max(largestEdit, end - start);
+		scheduler.request();
+		addDirtyRange(start, end);
+	}
+
+	/**
+	 * Adds a range to the ranges to recheck, growing the last one instead if
+	 * they overlap
+	 *
+	 * @param start
+	 *            The start of the range
+	 * @param end
+	 *            The end of the range
+	 */
+	private void addDirtyRange(int start, int end) {
+		// Grow the last range when typing carries on from it
+		int last = dirtyCount - 1;
+		if (last >= 0 && start <= dirtyEnds[last] && end >= dirtyStarts[last]) {
+			dirtyStarts[last] = Math.min(start, dirtyStarts[last]);
+			dirtyEnds[last] = Math.max(end, dirtyEnds[last]);
+			return;
+		}
+		if (dirtyCount == dirtyStarts.length) {
+			dirtyStarts = Arrays.copyOf(dirtyStarts, dirtyCount * 2);
+			dirtyEnds = Arrays.copyOf(dirtyEnds, dirtyCount * 2);
+		}
+		dirtyStarts[dirtyCount] = start;
+		dirtyEnds[dirtyCount] = end;
+		dirtyCount++;
+	}
+
+	/**
+	 * Forgets the edits waiting to be checked, for when a check of the whole
+	 * document has started and will see them
+	 */
+	void discardEdits() {
+		scheduler.cancel();
+		dirtyCount = 0;
+		largestEdit = 0;
+		heldStart = heldEnd = -1;
+	}
+
+	/**
+	 * Rechecks the words touching every edited range
+	 */
+	public void flush() {
+		scheduler.cancel();
+		// Check the word held back last time again, in case the caret left it
+		if (heldStart >= 0) {
+			addDirtyRange(heldStart, heldEnd);
+			heldStart = heldEnd = -1;
+		}
+		int count = dirtyCount;
+		dirtyCount = 0;
+		// Keystrokes add at most one character each
+		boolean typing = largestEdit <= 1;
+		largestEdit = 0;
+		SpellAnalyzer analyzer = spellChecker.getAnalyzer();
+		if (count == 0) {
+			return;
+		}
+		if (analyzer == null) {
+			spellChecker.checkTextArea();
+			return;
+		}
+		// A check of the whole document is running or about to restart, and
+		// it will see these edits, as when a file has just been loaded
+		if (spellChecker.isChecking()) {
+			return;
+		}
+		int edited = 0;
+		for (int i = 0; i < count; i++) {
+			edited += dirtyEnds[i] - dirtyStarts[i];
+		}
+		if (edited > LARGE_EDIT) {
+			spellChecker.checkTextArea();
+			return;
+		}
+		long started = System.nanoTime();
+		int caret = spellChecker.getTextField().getTextPane()
+				.getCaretPosition();
+		if (typing && count == 1 && dirtyEnds[0] <= caret
+				&& followsWord(caret)) {
+			checkLastWord(analyzer, dirtyStarts[0], caret);
+		} else {
+			sortDirtyRanges(count);
+			int checkedTo = 0;
+			for (int i = 0; i < count; i++) {
+				checkedTo = checkRange(analyzer,
+						Math.max(dirtyStarts[i], checkedTo), dirtyEnds[i],
+						checkedTo, typing);
+			}
+		}
+		EditorMetrics.CHECK_EDITS.recordSince(started);
+	}
+
+	/**
+	 * Returns true if the character before the caret separates words, as it
+	 * does once the user has typed past the end of a word
+	 *
+	 * @param caret
+	 *            The position of the caret
+	 * @return Whether the caret is after a separator
+	 */
+	private boolean followsWord(int caret) {
+		try {
+			return caret > 0
+					&& isBoundary(spellChecker.getTextField()
+							.getDefaultDocument(), caret - 1);
+		} catch (BadLocationException ble) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks the words of an edit that ends before the caret, taking the last
+	 * one by scanning back from the caret
+	 *
+	 * @param analyzer
+	 *            The analyzer to check with
+	 * @param start
+	 *            The start of the edited range
+	 * @param caret
+	 *            The position of the caret
+	 */
+	private void checkLastWord(SpellAnalyzer analyzer, int start, int caret) {
+		// Drop the marks of words the edit removed
+		spellChecker.getHighlighter().clear(start, start);
+		int wordStart = spellChecker.checkLastWord(caret);
+		if (start < wordStart) {
+			// A separator comes before the last word
+			checkRange(analyzer, start, wordStart - 1, 0, true);
+		}
+	}
+
+	/**
+	 * Sorts the edited ranges by where they start
+	 *
+	 * @param count
+	 *            The number of ranges
+	 */
+	private void sortDirtyRanges(int count) {
+		for (int i = 1; i < count; i++) {
+			int start = dirtyStarts[i];
+			int end = dirtyEnds[i];
+			int j = i - 1;
+			while (j >= 0 && dirtyStarts[j] > start) {
+				dirtyStarts[j + 1] = dirtyStarts[j];
+				dirtyEnds[j + 1] = dirtyEnds[j];
+				j--;
+			}
+			dirtyStarts[j + 1] = start;
+			dirtyEnds[j + 1] = end;
+		}
+	}
+
+	/**
+	 * Checks and marks every word touching a range
+	 *
+	 * @param analyzer
+	 *            The analyzer to check with
+	 * @param start
+	 *            The start of the range
+	 * @param end
+	 *            The end of the range
+	 * @param checkedTo
+	 *            Everything before this position has already been checked
+	 * @param typing
+	 *            Whether the edits were keystrokes
+	 * @return The position after the last word checked
+	 */
+	private int checkRange(SpellAnalyzer analyzer, int start, int end,
+			int checkedTo, boolean typing) {
+		DefaultStyledDocument document = spellChecker.getTextField()
+				.getDefaultDocument();
+		int length = document.getLength();
+		int from = Math.min(start, length);
+		int to = Math.min(Math.max(end, from), length);
+		try {
+			while (from > checkedTo && !isBoundary(document, from - 1)) {
+				from--;
+			}
+			while (to < length && !isBoundary(document, to)) {
+				to++;
+			}
+			// Drop the marks of words the edit removed
+			spellChecker.getHighlighter().clear(from, from);
+			if (from >= to) {
+				return Math.max(to, checkedTo);
+			}
+			document.getText(from, to - from, segment);
+		} catch (BadLocationException ble) {
+			System.out.println("Couldn't check edit");
+			return checkedTo;
+		}
+		int caret = spellChecker.getTextField().getTextPane()
+				.getCaretPosition() - from;
+		int checked = segment.length();
+		MisspellingHighlighter highlighter = spellChecker.getHighlighter();
+		// Hold the word being typed until the caret leaves it
+		if (typing && caret > 0 && caret <= checked
+				&& !isSeparator(segment, caret - 1)
+				&& (caret == checked || isSeparator(segment, caret))) {
+			int wordStart = caret;
+			while (wordStart > 0 && !isSeparator(segment, wordStart - 1)) {
+				wordStart--;
+			}
+			heldStart = from + wordStart;
+			heldEnd = from + caret;
+			highlighter.render(from, heldStart,
+					analyzer.analyze(segment, 0, wordStart, from));
+			highlighter.render(heldEnd, to,
+					analyzer.analyze(segment, caret, checked, from));
+		} else {
+			highlighter.render(from, to,
+					analyzer.analyze(segment, 0, checked, from));
+		}
+		return to;
+	}
+
+	/**
+	 * Returns true if the character at a position separates words
+	 *
+	 * @param document
+	 *            The document to read from
+	 * @param position
+	 *            The position of the character
+	 * @return Whether the character is whitespace
+	 * @throws BadLocationException
+	 *             If the position is outside the document
+	 */
+	private boolean isBoundary(DefaultStyledDocument document, int position)
+			throws BadLocationException {
+		document.getText(position, 1, segment);
+		return WordTokenizer.classify(segment.first()) == WordTokenizer.SEPARATOR;
+	}
+
+	/**
+	 * Returns true if a character of text that has been read separates words
+	 *
+	 * @param text
+	 *            The text
+	 * @param position
+	 *            The position of the character in the text
+	 * @return Whether the character is whitespace
+	 */
+	private static boolean isSeparator(CharSequence text, int position) {
+		return WordTokenizer.classify(text.charAt(position)) == WordTokenizer.SEPARATOR;
+	}
+}
@@ -0,0 +1,314 @@
+package spelling;
+
+import gui.TextField;
+
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Highlighter;
+import javax.swing.text.JTextComponent;
+import javax.swing.text.LayeredHighlighter;
+import javax.swing.text.Position;
+import javax.swing.text.View;
+
+/**
+ * Marks misspelled words with a wavy underline drawn by the text pane's
+ * highlighter, so checking never changes the document itself. Highlights
+ * move with the text as it is edited and are kept in document order, so the
+ * highlights in a range can be found with a binary search. This is the only
+ * part of spell checking that changes the text area; the words themselves
+ * are found by {@link SpellAnalyzer}.
+ *
+ * @author Inderpreet
+ */
+public class MisspellingHighlighter {
+
+	private static final int WAVE_LENGTH = 4;
+	private static final int WAVE_HEIGHT = 2;
+
+	private final TextField textField;
+	private final SquigglePainter painter = new SquigglePainter();
+	private final ArrayList<Highlighter.Highlight> highlights = new ArrayList<Highlighter.Highlight>();
+	private Runnable changeListener;
+
+	/**
+	 * Draws a wavy line under a highlighted range in the incorrect color
+	 */
+	private class SquigglePainter extends LayeredHighlighter.LayerPainter {
+
+		@Override
+		public void paint(Graphics g, int start, int end, Shape bounds,
+				JTextComponent component) {
+			try {
+				Rectangle first = component.modelToView(start);
+				Rectangle last = component.modelToView(end);
+				if (first != null && last != null && first.y == last.y) {
+					drawSquiggle(g, first.x, last.x, first.y + first.height);
+				}
+			} catch (BadLocationException ble) {
+				// The range was removed before it was painted
+			}
+		}
+
+		@Override
+		public Shape paintLayer(Graphics g, int start, int end, Shape bounds,
+				JTextComponent component, View view) {
+			if (start == end) {
+				return null;
+			}
+			Rectangle area;
+			if (start == view.getStartOffset() && end == view.getEndOffset()) {
+				area = bounds instanceof Rectangle ? (Rectangle) bounds
+						: bounds.getBounds();
+			} else {
+				try {
+					area = view.modelToView(start, Position.Bias.Forward, end,
+							Position.Bias.Backward, bounds).getBounds();
+				} catch (BadLocationException ble) {
+					return null;
+				}
+			}
+			drawSquiggle(g, area.x, area.x + area.width, area.y + area.height);
+			return area;
+		}
+
+		/**
+		 * Draws a wavy line
+		 *
+		 * @param g
+		 *            The graphics to draw with
+		 * @param from
+		 *            The left end of the line
+		 * @param to
+		 *            The right end of the line
+		 * @param bottom
+		 *            The bottom of the text the line goes under
+		 */
+		private void drawSquiggle(Graphics g, int from, int to, int bottom) {
+			g.setColor(textField.getIncorrectColor());
+			int y = bottom - WAVE_HEIGHT;
+			for (int x = from; x < to; x += WAVE_LENGTH) {
+				int middle = Math.min(x + WAVE_LENGTH / 2, to);
+				g.drawLine(x, y + WAVE_HEIGHT, middle, y);
+				g.drawLine(middle, y, Math.min(x + WAVE_LENGTH, to), y
+						+ WAVE_HEIGHT);
+			}
+		}
+	}
+
+	/**
+	 * Creates a layer of highlights on a text field
+	 *
+	 * @param textField
+	 *            The text field to mark words in
+	 */
+	public MisspellingHighlighter(TextField textField) {
+		this.textField = textField;
+	}
+
+	/**
+	 * Marks or unmarks a word, replacing any marks overlapping it
+	 *
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @param misspelled
+	 *            Whether the word should be marked
+	 */
+	public void mark(int start, int end, boolean misspelled) {
+		int count = highlights.size();
+		remove(start, end);
+		if (misspelled) {
+			add(start, end);
+		}
+		changed(count);
+	}
+
+	/**
+	 * Marks every misspelled word in a range and unmarks the rest
+	 *
+	 * @param start
+	 *            The start of the range
+	 * @param end
+	 *            The end of the range
+	 * @param misspelled
+	 *            The misspelled words in the range, in document order
+	 */
+	public void mark(int start, int end, Iterable<Span> misspelled) {
+		int count = highlights.size();
+		remove(start, end);
+		for (Span span : misspelled) {
+			add(span.getStart(), span.getEnd());
+		}
+		changed(count);
+	}
+
+	/**
+	 * Shows the misspelled words an analyzer found in a range of the
+	 * document. Can be called from any thread, and the marks are changed on
+	 * the event dispatch thread, so the caller must make sure the range has
+	 * not been edited since it was analyzed.
+	 *
+	 * @param start
+	 *            The start of the range
+	 * @param end
+	 *            The end of the range
+	 * @param misspelled
+	 *            The misspelled words in the range, in document order
+	 */
+	public void render(int start, int end, List<Span> misspelled) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			mark(start, end, misspelled);
+		} else {
+			SwingUtilities.invokeLater(() -> mark(start, end, misspelled));
+		}
+	}
+
+	/**
+	 * Removes the marks overlapping a range, along with any that have shrunk
+	 * to nothing inside it
+	 *
+	 * @param start
+	 *            The start of the range
+	 * @param end
+	 *            The end of the range
+	 */
+	public void clear(int start, int end) {
+		int count = highlights.size();
+		remove(start, end);
+		changed(count);
+	}
+
+	/**
+	 * Sets what to run when the number of marks changes
+	 *
+	 * @param changeListener
+	 *            The listener, or null
+	 */
+	public void setChangeListener(Runnable changeListener) {
+		this.changeListener = changeListener;
+	}
+
+	/**
+	 * Removes the marks overlapping a range without telling the listener
+	 *
+	 * @param start
+	 *            The start of the range
+	 * @param end
+	 *            The end of the range
+	 */
+	private void remove(int start, int end) {
+		int first = firstEndingAtOrAfter(start);
+		int last = first;
+		while (last < highlights.size()
+				&& highlights.get(last).getStartOffset() <= end) {
+			last++;
+		}
+		int kept = first;
+		Highlighter highlighter = getHighlighter();
+		for (int i = first; i < last; i++) {
+			Highlighter.Highlight highlight = highlights.get(i);
+			int highlightStart = highlight.getStartOffset();
+			int highlightEnd = highlight.getEndOffset();
+			if (highlightStart < end && highlightEnd > start
+					|| highlightStart == highlightEnd) {
+				highlighter.removeHighlight(highlight);
+			} else {
+				highlights.set(kept++, highlight);
+			}
+		}
+		highlights.subList(kept, last).clear();
+	}
+
+	/**
+	 * Gets the number of marked words
+	 *
+	 * @return The number of marks
+	 */
+	public int getMarkCount() {
+		return highlights.size();
+	}
+
+	/**
+	 * Redraws the marks, for when the incorrect color changes
+	 */
+	public void repaint() {
+		textField.getTextPane().repaint();
+	}
+
+	/**
+	 * Adds a mark where there is none
+	 *
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 */
+	private void add(int start, int end) {
+		if (start >= end) {
+			return;
+		}
+		try {
+			Object tag = getHighlighter().addHighlight(start, end, painter);
+			int low = 0, high = highlights.size();
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (highlights.get(middle).getStartOffset() < start) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			highlights.add(low, (Highlighter.Highlight) tag);
+		} catch (BadLocationException ble) {
+			System.out.println("Couldn't mark word");
+		}
+	}
+
+	/**
+	 * Tells the listener if the number of marks has changed
+	 *
+	 * @param count
+	 *            The number of marks before the change
+	 */
+	private void changed(int count) {
+		if (changeListener != null && count != highlights.size()) {
+			changeListener.run();
+		}
+	}
+
+	/**
+	 * Finds the first mark that ends at or after a position
+	 *
+	 * @param position
+	 *            The position
+	 * @return The index of the mark, or the number of marks if there is none
+	 */
+	private int firstEndingAtOrAfter(int position) {
+		int low = 0, high = highlights.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (highlights.get(middle).getEndOffset() < position) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Gets the text pane's highlighter
+	 *
+	 * @return The highlighter
+	 */
+	private Highlighter getHighlighter() {
+		return textField.getTextPane().getHighlighter();
+	}
+}
@@ -0,0 +1,403 @@
+package spelling;
+
+import file.CacheDirectory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * How often words and pairs of words are used, for ranking suggestions by
+ * the words around a misspelling. Words are identified by their position in
+ * the dictionary, so the model needs no table of its own for them. The log
+ * probability of each word is kept in an array by position, and each pair
+ * of words is a long made of both positions, kept sorted with the log
+ * probability of the second word following the first in a parallel array.
+ * Pairs that were never seen back off to the probability of the word alone.
+ * <p>
+ * The counts are read from name.freq next to the word list, one word or
+ * pair of words per line followed by its count, which is the format of the
+ * usual unigram and bigram frequency lists. Like the suggestion index, the
+ * model is written to the cache directory and memory-mapped on later runs,
+ * and rebuilt when the length or modification time of the list changes.
+ * <p>
+ * No frequency list ships with the editor, so the bundled dictionary gets an
+ * empty model and suggestions are ranked by edit distance alone until a
+ * list is placed next to its word list.
+ *
+ * @author Inderpreet
+ */
+public class NgramModel {
+
+	private static final int MAGIC = 0x4452474E;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+
+	/**
+	 * How much less likely a pair that was never seen is than its second
+	 * word alone
+	 */
+	private static final double BACKOFF = Math.log(0.4);
+
+	private final Dictionary dictionary;
+	private final LongBuffer pairs;
+	private final FloatBuffer pairLogs;
+	private final FloatBuffer wordLogs;
+	private final float unseenLog;
+
+	/**
+	 * Reads a model from a buffer
+	 *
+	 * @param dictionary
+	 *            The dictionary the model was built from
+	 * @param buffer
+	 *            The model in its saved format
+	 */
+	private NgramModel(Dictionary dictionary, ByteBuffer buffer) {
+		this.dictionary = dictionary;
+		int size = buffer.getInt(12);
+		int pairCount = buffer.getInt(16);
+		unseenLog = buffer.getFloat(20);
+		int position = HEADER_SIZE;
+		pairs = Dictionary.section(buffer, position, pairCount * 8)
+				.asLongBuffer();
+		position += pairCount * 8;
+		pairLogs = Dictionary.section(buffer, position, pairCount * 4)
+				.asFloatBuffer();
+		position += pairCount * 4;
+		wordLogs = Dictionary.section(buffer, position, size * 4)
+				.asFloatBuffer();
+	}
+
+	/**
+	 * Opens the model for a dictionary, building and saving it if there is no
+	 * up to date copy in the cache directory. Building reads the whole
+	 * frequency list, so it should not be done on the event dispatch thread.
+	 *
+	 * @param dictionary
+	 *            The dictionary the counts are for
+	 * @param name
+	 *            The name of the dictionary
+	 * @return The model, which is empty if the dictionary has no frequency
+	 *         list
+	 */
+	public static NgramModel open(Dictionary dictionary, String name) {
+		URL resource = NgramModel.class.getResource(name + ".freq");
+		if (resource == null) {
+			return empty(dictionary);
+		}
+		File file = CacheDirectory.getFile(name + ".ngrams");
+		try {
+			long sourceFingerprint = Dictionary.fingerprint(
+					Dictionary.FNV_OFFSET_64, resource);
+			ByteBuffer header = Dictionary.readHeader(file, HEADER_SIZE);
+			if (header != null
+					&& isCurrent(header, dictionary, sourceFingerprint)) {
+				return new NgramModel(dictionary, Dictionary.map(file));
+			}
+			ByteBuffer buffer;
+			try (InputStream inputStream = resource.openStream()) {
+				buffer = build(dictionary, inputStream, sourceFingerprint);
+			}
+			try {
+				DictionaryCompiler.write(buffer, file);
+				return new NgramModel(dictionary, Dictionary.map(file));
+			} catch (IOException ioe) {
+				System.out.println("Could not save word frequencies, keeping them in memory");
+			}
+			return new NgramModel(dictionary, buffer);
+		} catch (IOException | URISyntaxException e) {
+			System.out.println("Could not read word frequencies " + name);
+			return empty(dictionary);
+		}
+	}
+
+	/**
+	 * Returns true if the model has no counts
+	 *
+	 * @return Whether the model is empty
+	 */
+	public boolean isEmpty() {
+		return wordLogs.capacity() == 0;
+	}
+
+	/**
+	 * Scores a word by how likely it is between the words around it
+	 *
+	 * @param previous
+	 *            The position of the word before, or -1 if it is unknown
+	 * @param word
+	 *            The position of the word
+	 * @param next
+	 *            The position of the word after, or -1 if it is unknown
+	 * @return The log probability of the word and the word after it
+	 */
+	public double score(int previous, int word, int next) {
+		double score = previous < 0 ? wordLog(word) : pairLog(previous, word);
+		if (next >= 0) {
+			score += pairLog(word, next);
+		}
+		return score;
+	}
+
+	/**
+	 * Finds the position of a word in the dictionary the model was built from
+	 *
+	 * @param word
+	 *            The word, or null
+	 * @return The position, or -1 if the word is null or unknown
+	 */
+	public int indexOf(CharSequence word) {
+		return word == null ? -1 : dictionary.indexOf(word, 0, word.length());
+	}
+
+	/**
+	 * Gets roughly how much memory the model takes
+	 *
+	 * @return The size in bytes
+	 */
+	public long getSizeInBytes() {
+		return pairs.capacity() * 12L + wordLogs.capacity() * 4L;
+	}
+
+	/**
+	 * Gets the log probability of a word
+	 *
+	 * @param word
+	 *            The position of the word
+	 * @return The log probability
+	 */
+	private double wordLog(int word) {
+		return word < wordLogs.capacity() ? wordLogs.get(word) : unseenLog;
+	}
+
+	/**
+	 * Gets the log probability of a word following another, backing off to
+	 * the word alone if the pair was never seen
+	 *
+	 * @param first
+	 *            The position of the first word
+	 * @param second
+	 *            The position of the second word
+	 * @return The log probability
+	 */
+	private double pairLog(int first, int second) {
+		long key = (long) first << 32 | second;
+		int low = 0, high = pairs.capacity();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			long found = pairs.get(middle);
+			if (found < key) {
+				low = middle + 1;
+			} else if (found > key) {
+				high = middle;
+			} else {
+				return pairLogs.get(middle);
+			}
+		}
+		return BACKOFF + wordLog(second);
+	}
+
+	/**
+	 * Builds the model from a frequency list
+	 *
+	 * @param dictionary
+	 *            The dictionary the counts are for
+	 * @param inputStream
+	 *            The frequency list
+	 * @param sourceFingerprint
+	 *            The fingerprint of the frequency list, to tell when it
+	 *            changes
+	 * @return The model in its saved format
+	 * @throws IOException
+	 *             If the frequency list could not be read
+	 */
+	private static ByteBuffer build(Dictionary dictionary,
+			InputStream inputStream, long sourceFingerprint) throws IOException {
+		long[] wordCounts = new long[dictionary.size()];
+		long[] keys = new long[1 << 16];
+		long[] pairCounts = new long[1 << 16];
+		int pairCount = 0;
+		long total = 0;
+		BufferedReader bufferedReader = new BufferedReader(
+				new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+		String line;
+		while ((line = bufferedReader.readLine()) != null) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length < 2 || fields.length > 3) {
+				continue;
+			}
+			long count;
+			try {
+				count = Long.parseLong(fields[fields.length - 1]);
+			} catch (NumberFormatException nfe) {
+				continue;
+			}
+			int first = dictionary.indexOf(fields[0], 0, fields[0].length());
+			if (first < 0 || count <= 0) {
+				continue;
+			}
+			if (fields.length == 2) {
+				wordCounts[first] += count;
+				total += count;
+				continue;
+			}
+			int second = dictionary.indexOf(fields[1], 0, fields[1].length());
+			if (second < 0) {
+				continue;
+			}
+			if (pairCount == keys.length) {
+				keys = Arrays.copyOf(keys, pairCount * 2);
+				pairCounts = Arrays.copyOf(pairCounts, pairCount * 2);
+			}
+			keys[pairCount] = (long) first << 32 | second;
+			pairCounts[pairCount++] = count;
+		}
+		sort(keys, pairCounts, 0, pairCount - 1);
+
+		// Merge repeated pairs and drop those whose first word has no count
+		int kept = 0;
+		for (int i = 0; i < pairCount; i++) {
+			if (kept > 0 && keys[kept - 1] == keys[i]) {
+				pairCounts[kept - 1] += pairCounts[i];
+			} else if (wordCounts[(int) (keys[i] >>> 32)] > 0) {
+				keys[kept] = keys[i];
+				pairCounts[kept++] = pairCounts[i];
+			}
+		}
+
+		int size = wordCounts.length;
+		float unseenLog = (float) Math.log(0.5 / Math.max(total, 1));
+		ByteBuffer buffer = header(dictionary, size, kept, unseenLog,
+				sourceFingerprint);
+		for (int i = 0; i < kept; i++) {
+			buffer.putLong(keys[i]);
+		}
+		for (int i = 0; i < kept; i++) {
+			long firstCount = wordCounts[(int) (keys[i] >>> 32)];
+			buffer.putFloat((float) Math.log(Math.min(1.0, (double) pairCounts[i]
+					/ firstCount)));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putFloat(wordCounts[i] == 0 ? unseenLog : (float) Math
+					.log((double) wordCounts[i] / total));
+		}
+		buffer.rewind();
+		return buffer;
+	}
+
+	/**
+	 * Creates a model with no counts, which scores every word the same
+	 *
+	 * @param dictionary
+	 *            The dictionary
+	 * @return The model
+	 */
+	private static NgramModel empty(Dictionary dictionary) {
+		ByteBuffer buffer = header(dictionary, 0, 0, 0, 0);
+		buffer.rewind();
+		return new NgramModel(dictionary, buffer);
+	}
+
+	/**
+	 * Allocates a buffer for a model and writes its header
+	 *
+	 * @param dictionary
+	 *            The dictionary the model is for
+	 * @param size
+	 *            The number of words with a probability
+	 * @param pairCount
+	 *            The number of pairs of words
+	 * @param unseenLog
+	 *            The log probability of a word that was never counted
+	 * @param sourceFingerprint
+	 *            The fingerprint of the frequency list
+	 * @return The buffer, positioned after the header
+	 */
+	private static ByteBuffer header(Dictionary dictionary, int size,
+			int pairCount, float unseenLog, long sourceFingerprint) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + pairCount * 12
+				+ size * 4);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(dictionary.getChecksum());
+		buffer.putInt(size);
+		buffer.putInt(pairCount);
+		buffer.putFloat(unseenLog);
+		buffer.putLong(sourceFingerprint);
+		return buffer;
+	}
+
+	/**
+	 * Sorts pairs by key, moving their counts with them
+	 *
+	 * @param keys
+	 *            The keys
+	 * @param counts
+	 *            The counts
+	 * @param low
+	 *            The first index to sort
+	 * @param high
+	 *            The last index to sort
+	 */
+	private static void sort(long[] keys, long[] counts, int low, int high) {
+		while (low < high) {
+			long pivot = keys[(low + high) >>> 1];
+			int i = low, j = high;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					long key = keys[i];
+					keys[i] = keys[j];
+					keys[j] = key;
+					long count = counts[i];
+					counts[i++] = counts[j];
+					counts[j--] = count;
+				}
+			}
+			// Recurse into the smaller side to bound the stack depth
+			if (j - low < high - i) {
+				sort(keys, counts, low, j);
+				low = i;
+			} else {
+				sort(keys, counts, i, high);
+				high = j;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a saved model was built from the same dictionary and
+	 * frequency list
+	 *
+	 * @param buffer
+	 *            The header of the saved model
+	 * @param dictionary
+	 *            The dictionary
+	 * @param sourceFingerprint
+	 *            The fingerprint of the frequency list
+	 * @return Whether the model can be used
+	 */
+	private static boolean isCurrent(ByteBuffer buffer, Dictionary dictionary,
+			long sourceFingerprint) {
+		return buffer.capacity() >= HEADER_SIZE && buffer.getInt(0) == MAGIC
+				&& buffer.getInt(4) == VERSION
+				&& buffer.getInt(8) == dictionary.getChecksum()
+				&& buffer.getInt(12) == dictionary.size()
+				&& buffer.getLong(24) == sourceFingerprint;
+	}
+}
@@ -0,0 +1,238 @@
+package spelling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A prefix tree over the words of a dictionary, keyed by their lowercase
+ * letters. The nodes are kept in parallel arrays rather than objects, with
+ * each node's children in a sibling list sorted by letter. Completions are
+ * found breadth first below the node for the prefix, so the shortest words
+ * come first and a lookup stops as soon as it has enough of them.
+ *
+ * @author Inderpreet
+ */
+public class PrefixTrie {
+
+	private static final int NONE = -1;
+
+	/**
+	 * The most nodes a lookup visits, so a short prefix cannot take long
+	 */
+	private static final int MAX_VISITED = 1 << 14;
+
+	private final Dictionary dictionary;
+	private char[] letters = new char[1 << 16];
+	private int[] firstChildren = new int[1 << 16];
+	private int[] nextSiblings = new int[1 << 16];
+	private int[] words = new int[1 << 16];
+	private int nodeCount = 1;
+
+	/**
+	 * Builds a trie of every word in a dictionary
+	 *
+	 * @param dictionary
+	 *            The dictionary
+	 */
+	public PrefixTrie(Dictionary dictionary) {
+		this.dictionary = dictionary;
+		firstChildren[0] = NONE;
+		nextSiblings[0] = NONE;
+		words[0] = NONE;
+		for (int i = 0; i < dictionary.size(); i++) {
+			insert(WordTokenizer.normalize(dictionary.getWord(i)), i);
+		}
+		letters = Arrays.copyOf(letters, nodeCount);
+		firstChildren = Arrays.copyOf(firstChildren, nodeCount);
+		nextSiblings = Arrays.copyOf(nextSiblings, nodeCount);
+		words = Arrays.copyOf(words, nodeCount);
+	}
+
+	/**
+	 * Finds words starting with a prefix, shortest first and then in
+	 * alphabetical order
+	 *
+	 * @param prefix
+	 *            The start of the word, compared by its lowercase letters
+	 * @param max
+	 *            The most words to return
+	 * @return The words as they are written in the dictionary, not including
+	 *         the prefix itself
+	 */
+	public List<String> complete(CharSequence prefix, int max) {
+		ArrayList<String> completions = new ArrayList<String>(max);
+		int node = find(prefix);
+		if (node == NONE || max <= 0) {
+			return completions;
+		}
+		int[] queue = new int[64];
+		int head = 0, tail = 0;
+		for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+			queue = push(queue, tail++, child);
+		}
+		while (head < tail && head < MAX_VISITED) {
+			int current = queue[head++];
+			if (words[current] != NONE) {
+				completions.add(dictionary.getWord(words[current]));
+				if (completions.size() == max) {
+					break;
+				}
+			}
+			for (int child = firstChildren[current]; child != NONE; child = nextSiblings[child]) {
+				queue = push(queue, tail++, child);
+			}
+		}
+		return completions;
+	}
+
+	/**
+	 * Returns true if a word is in the trie
+	 *
+	 * @param word
+	 *            The word, compared by its lowercase letters
+	 * @return Whether the word is in the trie
+	 */
+	public boolean contains(CharSequence word) {
+		int node = find(word);
+		return node != NONE && words[node] != NONE;
+	}
+
+	/**
+	 * Gets the number of nodes
+	 *
+	 * @return The number of nodes
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Gets roughly how much memory the trie takes
+	 *
+	 * @return The size in bytes
+	 */
+	public long getSizeInBytes() {
+		// A letter and three ints per node
+		return nodeCount * 14L;
+	}
+
+	/**
+	 * Walks down the trie along the letters of a prefix
+	 *
+	 * @param prefix
+	 *            The prefix
+	 * @return The node for the prefix, or NONE if no word starts with it
+	 */
+	private int find(CharSequence prefix) {
+		int node = 0;
+		for (int i = 0; i < prefix.length() && node != NONE; i++) {
+			char c = prefix.charAt(i);
+			if (WordTokenizer.classify(c) == WordTokenizer.LETTER) {
+				node = child(node, Character.toLowerCase(c));
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the child of a node for a letter
+	 *
+	 * @param node
+	 *            The parent node
+	 * @param letter
+	 *            The letter
+	 * @return The child, or NONE if there is none
+	 */
+	private int child(int node, char letter) {
+		for (int child = firstChildren[node]; child != NONE
+				&& letters[child] <= letter; child = nextSiblings[child]) {
+			if (letters[child] == letter) {
+				return child;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Adds a word, keeping the first dictionary entry if two have the same
+	 * letters
+	 *
+	 * @param key
+	 *            The lowercase letters of the word
+	 * @param index
+	 *            The index of the word in the dictionary
+	 */
+	private void insert(String key, int index) {
+		if (key.isEmpty()) {
+			return;
+		}
+		int node = 0;
+		for (int i = 0; i < key.length(); i++) {
+			char letter = key.charAt(i);
+			int previous = NONE;
+			int child = firstChildren[node];
+			while (child != NONE && letters[child] < letter) {
+				previous = child;
+				child = nextSiblings[child];
+			}
+			if (child == NONE || letters[child] != letter) {
+				int created = newNode(letter, child);
+				if (previous == NONE) {
+					firstChildren[node] = created;
+				} else {
+					nextSiblings[previous] = created;
+				}
+				child = created;
+			}
+			node = child;
+		}
+		if (words[node] == NONE) {
+			words[node] = index;
+		}
+	}
+
+	/**
+	 * Creates a node with no children
+	 *
+	 * @param letter
+	 *            The letter leading to the node
+	 * @param nextSibling
+	 *            The sibling after it
+	 * @return The new node
+	 */
+	private int newNode(char letter, int nextSibling) {
+		if (nodeCount == letters.length) {
+			int capacity = nodeCount * 2;
+			letters = Arrays.copyOf(letters, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+			words = Arrays.copyOf(words, capacity);
+		}
+		int node = nodeCount++;
+		letters[node] = letter;
+		firstChildren[node] = NONE;
+		nextSiblings[node] = nextSibling;
+		words[node] = NONE;
+		return node;
+	}
+
+	/**
+	 * Adds a node to the end of a queue, growing it if needed
+	 *
+	 * @param queue
+	 *            The queue
+	 * @param index
+	 *            Where to put the node
+	 * @param node
+	 *            The node
+	 * @return The queue, which may be a new array
+	 */
+	private static int[] push(int[] queue, int index, int node) {
+		if (index == queue.length) {
+			queue = Arrays.copyOf(queue, index * 2);
+		}
+		queue[index] = node;
+		return queue;
+	}
+}
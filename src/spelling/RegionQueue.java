@@ -0,0 +1,142 @@
+package spelling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * The parts of a document still to be checked, taken in order of how close
+ * they are to the part on screen. Parts on screen come first, then those
+ * below it, nearest first, then those above it. When the screen moves, the
+ * parts left are put back in order, so a part scrolled into view is checked
+ * next. A part is only ever taken once. The screen is moved from the event
+ * dispatch thread while the parts are taken on a background thread, so
+ * every method is synchronized.
+ *
+ * @author Inderpreet
+ */
+public class RegionQueue {
+
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int size = 0;
+	private int visibleStart = 0;
+	private int visibleEnd = 0;
+	private PriorityQueue<Integer> queue = new PriorityQueue<Integer>(
+			this::compare);
+
+	/**
+	 * Adds a part to check
+	 *
+	 * @param start
+	 *            The start of the part, at a word boundary
+	 * @param end
+	 *            The end of the part, at a word boundary
+	 * @return The index of the part
+	 */
+	public synchronized int add(int start, int end) {
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		queue.add(size);
+		return size++;
+	}
+
+	/**
+	 * Sets the part of the document on screen and puts the parts left back in
+	 * order
+	 *
+	 * @param start
+	 *            The first position on screen
+	 * @param end
+	 *            The last position on screen
+	 */
+	public synchronized void setVisibleRange(int start, int end) {
+		if (start == visibleStart && end == visibleEnd) {
+			return;
+		}
+		visibleStart = start;
+		visibleEnd = end;
+		ArrayList<Integer> left = new ArrayList<Integer>(queue);
+		queue = new PriorityQueue<Integer>(Math.max(1, left.size()),
+				this::compare);
+		queue.addAll(left);
+	}
+
+	/**
+	 * Takes the part that should be checked next
+	 *
+	 * @return The index of the part, or -1 if every part has been taken
+	 */
+	public synchronized int poll() {
+		Integer region = queue.poll();
+		return region == null ? -1 : region;
+	}
+
+	/**
+	 * Returns true if every part has been taken
+	 *
+	 * @return Whether the queue is empty
+	 */
+	public synchronized boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * Gets the start of a part
+	 *
+	 * @param region
+	 *            The index of the part
+	 * @return The start of the part
+	 */
+	public synchronized int getStart(int region) {
+		return starts[region];
+	}
+
+	/**
+	 * Gets the end of a part
+	 *
+	 * @param region
+	 *            The index of the part
+	 * @return The end of the part
+	 */
+	public synchronized int getEnd(int region) {
+		return ends[region];
+	}
+
+	/**
+	 * Orders two parts by how soon they should be checked
+	 *
+	 * @param first
+	 *            The index of the first part
+	 * @param second
+	 *            The index of the second part
+	 * @return Less than 0 if the first part comes first
+	 */
+	private int compare(Integer first, Integer second) {
+		int order = Long.compare(distance(first), distance(second));
+		return order != 0 ? order : Integer.compare(first, second);
+	}
+
+	/**
+	 * Gets how far a part is from the screen. Parts above the screen count as
+	 * further away than any part below it.
+	 *
+	 * @param region
+	 *            The index of the part
+	 * @return 0 if the part is on screen, otherwise larger the further away it
+	 *         is
+	 */
+	private long distance(int region) {
+		if (ends[region] <= visibleStart && visibleStart > 0) {
+			return (long) Integer.MAX_VALUE + visibleStart - ends[region];
+		}
+		if (starts[region] > visibleEnd) {
+			return starts[region] - visibleEnd;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,277 @@
+package spelling;
+
+import file.CacheDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Remembers where the misspelled words of a file were between runs, so
+ * reopening a file does not mean checking all of it again. The text is split
+ * into blocks of whole lines, and each block is stored under a hash of its
+ * characters with the misspelled words inside it. A block ends after a line
+ * whose hash picks it, so an edit only changes the blocks it touches and the
+ * blocks after it line up with the stored ones again. Blocks found in the
+ * cache are marked straight away and only the rest are checked. The stored
+ * results also record which dictionary and user words they were found with,
+ * and are ignored once either changes.
+ *
+ * @author Inderpreet
+ */
+public class ResultCache {
+
+	private static final int MAGIC = 0x44524752;
+	private static final int VERSION = 1;
+
+	/**
+	 * One line in this many ends a block, on average
+	 */
+	private static final int BOUNDARY_MASK = 31;
+
+	/**
+	 * Blocks longer than this end at the next whitespace, for text without
+	 * line breaks
+	 */
+	private static final int MAX_BLOCK = 1 << 16;
+
+	/**
+	 * A run of whole lines and the misspelled words in it
+	 */
+	static final class Block {
+
+		private final int start;
+		private final int length;
+		private final long hash;
+		private int[] misspelled;
+
+		Block(int start, int length, long hash, int[] misspelled) {
+			this.start = start;
+			this.length = length;
+			this.hash = hash;
+			this.misspelled = misspelled;
+		}
+
+		/**
+		 * Gets the index of the first character of the block
+		 *
+		 * @return The start of the block
+		 */
+		int getStart() {
+			return start;
+		}
+
+		/**
+		 * Gets the index after the last character of the block
+		 *
+		 * @return The end of the block
+		 */
+		int getEnd() {
+			return start + length;
+		}
+
+		/**
+		 * Returns true if the misspelled words in the block are known
+		 *
+		 * @return Whether the block has been checked
+		 */
+		boolean isChecked() {
+			return misspelled != null;
+		}
+
+		/**
+		 * Gets the misspelled words in the block
+		 *
+		 * @return The words, by their position in the document
+		 */
+		List<Span> getMisspelled() {
+			ArrayList<Span> spans = new ArrayList<Span>(misspelled.length / 2);
+			for (int i = 0; i < misspelled.length; i += 2) {
+				spans.add(new Span(start + misspelled[i], start
+						+ misspelled[i + 1]));
+			}
+			return spans;
+		}
+
+		/**
+		 * Sets the misspelled words in the block
+		 *
+		 * @param spans
+		 *            The words, by their position in the document
+		 */
+		void setMisspelled(List<Span> spans) {
+			misspelled = new int[spans.size() * 2];
+			for (int i = 0; i < spans.size(); i++) {
+				misspelled[i * 2] = spans.get(i).getStart() - start;
+				misspelled[i * 2 + 1] = spans.get(i).getEnd() - start;
+			}
+		}
+	}
+
+	private final File file;
+
+	/**
+	 * Creates the cache for one file
+	 *
+	 * @param document
+	 *            The file whose results are cached
+	 */
+	public ResultCache(File document) {
+		long hash = Dictionary.FNV_OFFSET_64;
+		String path = document.getAbsolutePath();
+		for (int i = 0; i < path.length(); i++) {
+			hash = (hash ^ path.charAt(i)) * Dictionary.FNV_PRIME_64;
+		}
+		file = CacheDirectory.getFile(Long.toHexString(hash) + ".results");
+	}
+
+	/**
+	 * Splits a text into blocks and fills in those already in the cache
+	 *
+	 * @param text
+	 *            The text
+	 * @param dictionary
+	 *            The dictionary the text is checked against
+	 * @return The blocks in document order
+	 */
+	List<Block> restore(CharSequence text, Dictionary dictionary) {
+		List<Block> blocks = split(text);
+		HashMap<Long, Block> stored = load(version(dictionary));
+		for (Block block : blocks) {
+			Block found = stored.get(block.hash);
+			if (found != null && found.length == block.length) {
+				block.misspelled = found.misspelled;
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Saves the misspelled words of every block
+	 *
+	 * @param blocks
+	 *            The blocks, which must all be checked
+	 * @param dictionary
+	 *            The dictionary they were checked against
+	 */
+	void save(List<Block> blocks, Dictionary dictionary) {
+		int size = 20;
+		for (Block block : blocks) {
+			size += 16 + block.misspelled.length * 4;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(version(dictionary));
+		buffer.putInt(blocks.size());
+		for (Block block : blocks) {
+			buffer.putLong(block.hash);
+			buffer.putInt(block.length);
+			buffer.putInt(block.misspelled.length);
+			for (int offset : block.misspelled) {
+				buffer.putInt(offset);
+			}
+		}
+		try {
+			DictionaryCompiler.write(buffer, file);
+		} catch (IOException ioe) {
+			System.out.println("Could not save spelling results");
+		}
+	}
+
+	/**
+	 * Reads the stored blocks if they were found with the same words
+	 *
+	 * @param version
+	 *            The version of the words the text is checked against
+	 * @return The stored blocks by hash, which is empty if there are none
+	 */
+	private HashMap<Long, Block> load(long version) {
+		HashMap<Long, Block> stored = new HashMap<Long, Block>();
+		if (!file.isFile()) {
+			return stored;
+		}
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file
+					.toPath()));
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| buffer.getLong() != version) {
+				return stored;
+			}
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				long hash = buffer.getLong();
+				int length = buffer.getInt();
+				int[] misspelled = new int[buffer.getInt()];
+				buffer.asIntBuffer().get(misspelled);
+				buffer.position(buffer.position() + misspelled.length * 4);
+				stored.put(hash, new Block(0, length, hash, misspelled));
+			}
+		} catch (IOException | BufferUnderflowException
+				| NegativeArraySizeException ex) {
+			System.out.println("Could not read spelling results");
+			stored.clear();
+		}
+		return stored;
+	}
+
+	/**
+	 * Splits a text into blocks of whole lines
+	 *
+	 * @param text
+	 *            The text
+	 * @return The blocks in document order, none of them checked
+	 */
+	static List<Block> split(CharSequence text) {
+		ArrayList<Block> blocks = new ArrayList<Block>();
+		int start = 0;
+		long hash = Dictionary.FNV_OFFSET_64;
+		int lineHash = Dictionary.FNV_OFFSET;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			hash = (hash ^ c) * Dictionary.FNV_PRIME_64;
+			lineHash = (lineHash ^ c) * Dictionary.FNV_PRIME;
+			boolean boundary;
+			if (c == '\n') {
+				boundary = (Dictionary.mix(lineHash) & BOUNDARY_MASK) == 0;
+				lineHash = Dictionary.FNV_OFFSET;
+			} else {
+				boundary = false;
+			}
+			if (boundary || i + 1 - start >= MAX_BLOCK
+					&& WordTokenizer.classify(c) == WordTokenizer.SEPARATOR) {
+				blocks.add(new Block(start, i + 1 - start, hash, null));
+				start = i + 1;
+				hash = Dictionary.FNV_OFFSET_64;
+			}
+		}
+		if (start < text.length()) {
+			blocks.add(new Block(start, text.length() - start, hash, null));
+		}
+		return blocks;
+	}
+
+	/**
+	 * Identifies the words a text is checked against, so results found with
+	 * other words are not used
+	 *
+	 * @param dictionary
+	 *            The dictionary
+	 * @return The version
+	 */
+	private static long version(Dictionary dictionary) {
+		long userWords = 0;
+		UserDictionary userDictionary = dictionary.getUserDictionary();
+		if (userDictionary != null) {
+			for (String word : userDictionary.getWords()) {
+				userWords += WordTokenizer.normalize(word).hashCode();
+			}
+		}
+		return (long) dictionary.getChecksum() << 32 ^ userWords;
+	}
+}
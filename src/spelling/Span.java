@@ -0,0 +1,63 @@
+package spelling;
+
+/**
+ * A range of characters in a document
+ *
+ * @author Inderpreet
+ */
+public final class Span {
+
+	private final int start;
+	private final int end;
+
+	public Span(int start, int end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Gets the index of the first character
+	 *
+	 * @return The start of the span
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Gets the index after the last character
+	 *
+	 * @return The end of the span
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Gets the number of characters in the span
+	 *
+	 * @return The length of the span
+	 */
+	public int getLength() {
+		return end - start;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof Span)) {
+			return false;
+		}
+		Span span = (Span) other;
+		return start == span.start && end == span.end;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * start + end;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + start + ", " + end + ")";
+	}
+}
@@ -0,0 +1,144 @@
+package spelling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import metrics.EditorMetrics;
+
+/**
+ * Finds the misspelled words in a text without touching a document or any
+ * Swing component. An analyzer only holds its dictionary and verdict cache,
+ * neither of which locks or can be seen half changed, so one analyzer can
+ * be shared by any number of threads. The results are immutable lists of
+ * spans, which {@link MisspellingHighlighter} shows in a text area.
+ *
+ * @author Inderpreet
+ */
+public final class SpellAnalyzer {
+
+	private final Dictionary dictionary;
+	private final VerdictCache cache;
+
+	/**
+	 * Creates an analyzer for a dictionary
+	 *
+	 * @param dictionary
+	 *            The dictionary to check against
+	 */
+	public SpellAnalyzer(Dictionary dictionary) {
+		this(dictionary, null);
+	}
+
+	/**
+	 * Creates an analyzer for a dictionary that remembers recent verdicts
+	 *
+	 * @param dictionary
+	 *            The dictionary to check against
+	 * @param cache
+	 *            The cache of recent verdicts, or null
+	 */
+	public SpellAnalyzer(Dictionary dictionary, VerdictCache cache) {
+		this.dictionary = dictionary;
+		this.cache = cache;
+	}
+
+	/**
+	 * Gets the dictionary words are checked against
+	 *
+	 * @return The dictionary
+	 */
+	public Dictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Finds the misspelled words in a whole text
+	 *
+	 * @param text
+	 *            The text, which must not change while it is read
+	 * @return The misspelled words in the order they appear
+	 */
+	public List<Span> analyze(CharSequence text) {
+		return analyze(text, 0, text.length());
+	}
+
+	/**
+	 * Finds the misspelled words touching a range of a text. A word cut by
+	 * either end of the range is checked whole.
+	 *
+	 * @param text
+	 *            The text, which must not change while it is read
+	 * @param start
+	 *            The start of the range
+	 * @param end
+	 *            The end of the range
+	 * @return The misspelled words in the order they appear, by their
+	 *         position in the text
+	 * @throws IndexOutOfBoundsException
+	 *             If the range is not inside the text
+	 */
+	public List<Span> analyze(CharSequence text, int start, int end) {
+		return analyze(text, start, end, 0);
+	}
+
+	/**
+	 * Finds the misspelled words touching a range of a piece of a longer
+	 * text, such as a segment read from a document. A word cut by either end
+	 * of the range is checked whole.
+	 *
+	 * @param text
+	 *            The piece of text, which must not change while it is read
+	 * @param start
+	 *            The start of the range in the piece
+	 * @param end
+	 *            The end of the range in the piece
+	 * @param offset
+	 *            Where the piece starts in the longer text
+	 * @return The misspelled words in the order they appear, by their
+	 *         position in the longer text
+	 * @throws IndexOutOfBoundsException
+	 *             If the range is not inside the piece
+	 */
+	public List<Span> analyze(CharSequence text, int start, int end,
+			int offset) {
+		int length = text.length();
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("Range " + start + " to "
+					+ end + " is outside a text of length " + length);
+		}
+		if (start < length && !isSeparator(text, start)) {
+			while (start > 0 && !isSeparator(text, start - 1)) {
+				start--;
+			}
+		}
+		if (end > 0 && !isSeparator(text, end - 1)) {
+			end = SpellCheckTask.alignToWord(text, end, length);
+		}
+		ArrayList<Span> spans = new ArrayList<Span>();
+		int wordsChecked = 0;
+		WordTokenizer tokenizer = new WordTokenizer().reset(text, start, end);
+		while (tokenizer.next()) {
+			wordsChecked++;
+			if (!tokenizer.isWord(dictionary, cache)) {
+				spans.add(new Span(offset + tokenizer.getStart(), offset
+						+ tokenizer.getEnd()));
+			}
+		}
+		EditorMetrics.recordWords(wordsChecked, spans.size());
+		return Collections.unmodifiableList(spans);
+	}
+
+	/**
+	 * Returns true if the character at a position separates words
+	 *
+	 * @param text
+	 *            The text
+	 * @param position
+	 *            The position of the character
+	 * @return Whether the character is whitespace
+	 */
+	private static boolean isSeparator(CharSequence text, int position) {
+		return WordTokenizer.classify(text.charAt(position)) == WordTokenizer.SEPARATOR;
+	}
+}
@@ -0,0 +1,93 @@
+package spelling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the misspelled words in part of a text by splitting it at word
+ * boundaries and checking the halves in parallel on a fork/join pool with a
+ * shared {@link SpellAnalyzer}. The results come back in document order.
+ *
+ * @author Inderpreet
+ */
+@SuppressWarnings("serial")
+public class SpellCheckTask extends RecursiveTask<List<Span>> {
+
+	/**
+	 * Ranges shorter than this are checked on one thread
+	 */
+	public static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+	private final CharSequence text;
+	private final int start;
+	private final int end;
+	private final SpellAnalyzer analyzer;
+
+	/**
+	 * Creates a task for part of a text
+	 *
+	 * @param text
+	 *            The text, which must not change while the task runs
+	 * @param start
+	 *            The start of the range, at a word boundary
+	 * @param end
+	 *            The end of the range, at a word boundary
+	 * @param analyzer
+	 *            The analyzer to check with
+	 */
+	public SpellCheckTask(CharSequence text, int start, int end,
+			SpellAnalyzer analyzer) {
+		this.text = text;
+		this.start = start;
+		this.end = end;
+		this.analyzer = analyzer;
+	}
+
+	@Override
+	protected List<Span> compute() {
+		if (end - start <= SEQUENTIAL_THRESHOLD) {
+			return checkSequentially();
+		}
+		int middle = alignToWord(text, start + (end - start) / 2, end);
+		if (middle >= end) {
+			return checkSequentially();
+		}
+		SpellCheckTask left = new SpellCheckTask(text, start, middle, analyzer);
+		SpellCheckTask right = new SpellCheckTask(text, middle, end, analyzer);
+		left.fork();
+		List<Span> rightSpans = right.compute();
+		List<Span> spans = left.join();
+		spans.addAll(rightSpans);
+		return spans;
+	}
+
+	/**
+	 * Checks the range on the current thread
+	 *
+	 * @return The misspelled words in document order
+	 */
+	private List<Span> checkSequentially() {
+		return new ArrayList<Span>(analyzer.analyze(text, start, end));
+	}
+
+	/**
+	 * Moves a position forward to the next word boundary
+	 *
+	 * @param text
+	 *            The text
+	 * @param position
+	 *            The position to move
+	 * @param end
+	 *            The furthest the position can move
+	 * @return The first position at or after the given one that is not inside
+	 *         a word
+	 */
+	public static int alignToWord(CharSequence text, int position, int end) {
+		while (position < end
+				&& WordTokenizer.classify(text.charAt(position)) != WordTokenizer.SEPARATOR) {
+			position++;
+		}
+		return position;
+	}
+}
@@ -0,0 +1,198 @@
+package spelling;
+
+import gui.TextField;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.swing.SwingWorker;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Checks a snapshot of a document on a background thread and marks the
+ * misspelled words on the event dispatch thread. The text is split into
+ * regions that are checked in rounds on the fork/join pool with
+ * {@link SpellCheckTask}, taking the regions on screen first and the rest in
+ * order of how far they are from the screen, using a {@link RegionQueue}
+ * that follows the screen while the check runs. When the document came from
+ * a file, only the parts that changed since the file was last checked are
+ * looked at, using {@link ResultCache}.
+ *
+ * @author Inderpreet
+ */
+public class SpellCheckWorker extends SwingWorker<Integer, SpellCheckWorker.Batch> {
+
+	/**
+	 * The length of the regions the text is split into when there are no
+	 * cached blocks to split it by. Each region is split again into a few
+	 * tasks, so threads that finish early can take part of another region.
+	 */
+	private static final int REGION_SIZE = 4 * SpellCheckTask
+			.SEQUENTIAL_THRESHOLD;
+
+	/**
+	 * How many characters each round checks, so every thread of the pool has
+	 * a region while the screen is still looked at often
+	 */
+	private static final int ROUND_SIZE = Math.max(1,
+			ForkJoinPool.getCommonPoolParallelism()) * REGION_SIZE;
+
+	private final String text;
+	private final Dictionary dictionary;
+	private final SpellAnalyzer analyzer;
+	private final MisspellingHighlighter highlighter;
+	private final ResultCache resultCache;
+	private final RegionQueue regions = new RegionQueue();
+
+	/**
+	 * Holds the misspelled words found in a region of the document
+	 */
+	static class Batch {
+
+		private final int start;
+		private final int end;
+		private final List<Span> misspelled;
+
+		Batch(int start, int end, List<Span> misspelled) {
+			this.start = start;
+			this.end = end;
+			this.misspelled = misspelled;
+		}
+	}
+
+	/**
+	 * Creates a worker for the current text of a text field. Must be called
+	 * on the event dispatch thread.
+	 *
+	 * @param textField
+	 *            The text field to check
+	 * @param highlighter
+	 *            The layer to mark misspelled words on
+	 * @param analyzer
+	 *            The analyzer to check with
+	 * @param resultCache
+	 *            The results of earlier checks of the same file, or null
+	 */
+	public SpellCheckWorker(TextField textField,
+			MisspellingHighlighter highlighter, SpellAnalyzer analyzer,
+			ResultCache resultCache) {
+		this.highlighter = highlighter;
+		this.analyzer = analyzer;
+		dictionary = analyzer.getDictionary();
+		this.resultCache = resultCache;
+		// Read the document itself, since the pane's text has the platform's
+		// line separators and its offsets would not match the document's
+		Document document = textField.getDefaultDocument();
+		String snapshot;
+		try {
+			snapshot = document.getText(0, document.getLength());
+		} catch (BadLocationException ble) {
+			System.out.println("Could not read the text to check");
+			snapshot = "";
+		}
+		text = snapshot;
+	}
+
+	/**
+	 * Sets the part of the document on screen, which is checked before the
+	 * rest. Can be called from any thread while the check runs.
+	 *
+	 * @param start
+	 *            The first position on screen
+	 * @param end
+	 *            The last position on screen
+	 */
+	public void setVisibleRange(int start, int end) {
+		regions.setVisibleRange(start, end);
+	}
+
+	@Override
+	protected Integer doInBackground() {
+		int length = text.length();
+		int errorsFound = 0;
+		int checked = 0;
+		List<ResultCache.Block> blocks = null;
+		ArrayList<ResultCache.Block> queued = new ArrayList<ResultCache.Block>();
+		if (resultCache != null) {
+			// Mark the cached blocks straight away and queue the rest
+			blocks = resultCache.restore(text, dictionary);
+			for (ResultCache.Block block : blocks) {
+				if (block.isChecked()) {
+					List<Span> misspelled = block.getMisspelled();
+					errorsFound += misspelled.size();
+					checked += block.getEnd() - block.getStart();
+					publish(new Batch(block.getStart(), block.getEnd(),
+							misspelled));
+				} else {
+					regions.add(block.getStart(), block.getEnd());
+					queued.add(block);
+				}
+			}
+		} else {
+			for (int start = 0; start < length;) {
+				int end = SpellCheckTask.alignToWord(text,
+						Math.min(start + REGION_SIZE, length), length);
+				regions.add(start, end);
+				start = end;
+			}
+		}
+		if (length == 0) {
+			publish(new Batch(0, 0, new ArrayList<Span>()));
+		}
+		setProgress(length == 0 ? 100 : (int) (100L * checked / length));
+
+		ArrayList<Integer> round = new ArrayList<Integer>();
+		ArrayList<ForkJoinTask<List<Span>>> tasks = new ArrayList<ForkJoinTask<List<Span>>>();
+		while (!regions.isEmpty()) {
+			// Take the regions nearest the screen as it is now
+			round.clear();
+			tasks.clear();
+			int roundLength = 0;
+			int region;
+			while (roundLength < ROUND_SIZE && (region = regions.poll()) >= 0) {
+				int start = regions.getStart(region);
+				int end = regions.getEnd(region);
+				round.add(region);
+				tasks.add(ForkJoinPool.commonPool().submit(
+						new SpellCheckTask(text, start, end, analyzer)));
+				roundLength += end - start;
+			}
+			for (int i = 0; i < round.size(); i++) {
+				if (isCancelled()) {
+					for (int j = i; j < tasks.size(); j++) {
+						tasks.get(j).cancel(false);
+					}
+					return errorsFound;
+				}
+				region = round.get(i);
+				int start = regions.getStart(region);
+				int end = regions.getEnd(region);
+				List<Span> misspelled = tasks.get(i).join();
+				if (blocks != null) {
+					queued.get(region).setMisspelled(misspelled);
+				}
+				errorsFound += misspelled.size();
+				checked += end - start;
+				publish(new Batch(start, end, misspelled));
+				setProgress((int) (100L * checked / length));
+			}
+		}
+		if (blocks != null && !queued.isEmpty()) {
+			resultCache.save(blocks, dictionary);
+		}
+		return errorsFound;
+	}
+
+	@Override
+	protected void process(List<Batch> batches) {
+		if (isCancelled()) {
+			return;
+		}
+		for (Batch batch : batches) {
+			highlighter.render(batch.start, batch.end, batch.misspelled);
+		}
+	}
+}
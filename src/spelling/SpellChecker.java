@@ -2,10 +2,23 @@ package spelling;
 
 import gui.TextField;
 
-import java.util.ArrayList;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntConsumer;
 
+import javax.swing.JTextPane;
+import javax.swing.JViewport;
+import javax.swing.SwingWorker;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
-import javax.swing.text.StyleConstants;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+import metrics.EditorMetrics;
 
 /**
  * 
@@ -14,91 +27,555 @@ import javax.swing.text.StyleConstants;
  */
 public class SpellChecker {
 
-	private ArrayList<String> dictionary;
+	/**
+	 * The number of verdicts kept for each dictionary a spell checker loads,
+	 * or 0 for no cache. Set with -Ddragyn.verdictCache=4096
+	 */
+	public static final int VERDICT_CACHE_SIZE = Integer.getInteger(
+			"dragyn.verdictCache", 4096);
+
+	/**
+	 * How the verdict cache evicts, FIFO or LRU. FIFO hits only read, while
+	 * LRU hits write to entries every checking thread shares. Set with
+	 * -Ddragyn.verdictCache.eviction=FIFO
+	 */
+	public static final String VERDICT_CACHE_EVICTION = System.getProperty(
+			"dragyn.verdictCache.eviction", "FIFO");
+
+	/**
+	 * How many characters before the caret are read at first when looking for
+	 * the last word. The window doubles until it holds the whole word.
+	 */
+	private static final int LAST_WORD_WINDOW = 64;
+
+	private Dictionary dictionary;
+	private volatile SpellAnalyzer analyzer;
+	private volatile String language = Dictionary.DEFAULT_NAME;
+	private Dictionary previousDictionary;
+	private String previousLanguage;
+	private boolean checkPending = false;
 	private int errorsFound = 0;
 	private TextField textField;
+	private final MisspellingHighlighter highlighter;
+	private SpellCheckWorker worker;
+	private long checkStarted;
+	private Runnable whenDone;
+	private IntConsumer progressListener;
+	private final Segment lastWordSegment = new Segment();
+	private ResultCache resultCache;
+	private final IncrementalSpellChecker incrementalChecker;
+	private final CheckScheduler restartScheduler = new CheckScheduler(
+			() -> checkTextArea(whenDone));
+	private int visibleStart = 0;
+	private int visibleEnd = 0;
+	private boolean disposed = false;
 
-	public SpellChecker(TextField textField) {
-		// Creates dictionary
-		Dictionary dict = new Dictionary();
-		dictionary = dict.getDictionary();
+	// Restarts a running check when the text is edited
+	private final DocumentListener restartListener = new DocumentListener() {
+		@Override
+		public void insertUpdate(DocumentEvent e) {
+			restartCheck();
+		}
 
+		@Override
+		public void removeUpdate(DocumentEvent e) {
+			restartCheck();
+		}
+
+		@Override
+		public void changedUpdate(DocumentEvent e) {
+		}
+	};
+
+	public SpellChecker(TextField textField) {
 		// Set textField
 		this.textField = textField;
+
+		// Mark misspelled words without changing the document
+		highlighter = new MisspellingHighlighter(textField);
+
+		// Restart a running check when the text is edited
+		textField.getDefaultDocument().addDocumentListener(restartListener);
+
+		// Recheck the words touched by each edit
+		incrementalChecker = new IncrementalSpellChecker(this);
+		textField.getDefaultDocument().addDocumentListener(incrementalChecker);
+		textField.getTextPane().addCaretListener(incrementalChecker);
+
+		// Use the shared dictionary once it has loaded
+		DictionaryRegistry.retain(language);
+		whenReady(language);
 	}
 
 	/**
-	 * Checks the spelling of the last word
+	 * Sets the language of the text area. The text area is checked again in
+	 * the background once the dictionary for the language has loaded. If it
+	 * cannot be loaded, the text area goes back to the dictionary it used
+	 * before.
 	 * 
-	 * @param cursor
-	 *            The position of the cursor
+	 * @param language
+	 *            The name of the dictionary for the language
+	 */
+	public void setLanguage(String language) {
+		if (language.equals(this.language)) {
+			return;
+		}
+		DictionaryRegistry.retain(language);
+		if (dictionary != null) {
+			// Keep the dictionary in use until the new one has loaded
+			previousDictionary = dictionary;
+			previousLanguage = this.language;
+		} else {
+			DictionaryRegistry.release(this.language);
+		}
+		this.language = language;
+		cancelCheck();
+		dictionary = null;
+		analyzer = null;
+		whenDone = null;
+		checkPending = true;
+		whenReady(language);
+	}
+
+	/**
+	 * Sets the file the text area holds, so the results of checking it are
+	 * kept between runs and only the parts that change are checked again
+	 * 
+	 * @param file
+	 *            The file, or null if the text is not from a file
+	 */
+	public void setFile(File file) {
+		resultCache = file == null ? null : new ResultCache(file);
+	}
+
+	/**
+	 * Gets the language of the text area
+	 * 
+	 * @return The name of the dictionary for the language
+	 */
+	public String getLanguage() {
+		return language;
+	}
+
+	/**
+	 * Uses a dictionary once it has loaded, unless the language has changed
+	 * again by then
+	 * 
+	 * @param name
+	 *            The name of the dictionary
+	 */
+	private void whenReady(String name) {
+		DictionaryRegistry.whenReady(name, loaded -> {
+			if (!disposed && name.equals(language)) {
+				setDictionary(loaded);
+			}
+		}, () -> {
+			if (!disposed && name.equals(language)) {
+				loadFailed();
+			}
+		});
+	}
+
+	/**
+	 * Goes back to the dictionary used before the language was set, since
+	 * the dictionary for the language could not be loaded. A check
+	 * requested while it was loading is run with the previous dictionary, or
+	 * dropped if there is none.
+	 */
+	private void loadFailed() {
+		if (previousDictionary == null) {
+			checkPending = false;
+			return;
+		}
+		DictionaryRegistry.release(language);
+		language = previousLanguage;
+		Dictionary dictionary = previousDictionary;
+		previousDictionary = null;
+		previousLanguage = null;
+		setDictionary(dictionary);
+	}
+
+	/**
+	 * Sets the dictionary, running any check requested while it was loading
+	 * 
+	 * @param dictionary
+	 *            The loaded dictionary
 	 */
-	public void checkLastWord(int cursor) {
+	private void setDictionary(Dictionary dictionary) {
+		if (previousLanguage != null) {
+			DictionaryRegistry.release(previousLanguage);
+			previousDictionary = null;
+			previousLanguage = null;
+		}
+		this.dictionary = dictionary;
+		// A fresh cache, so checks still running with the old dictionary
+		// cannot leave their verdicts in it
+		analyzer = new SpellAnalyzer(dictionary, createVerdictCache());
+		if (checkPending) {
+			checkPending = false;
+			checkTextArea(whenDone);
+		}
+	}
+
+	/**
+	 * Gets the dictionary
+	 * 
+	 * @return The dictionary, or null if it has not loaded yet
+	 */
+	public Dictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Gets the analyzer for the dictionary of the text area, which can check
+	 * any text from any thread without touching the text area
+	 * 
+	 * @return The analyzer, or null if the dictionary has not loaded yet
+	 */
+	public SpellAnalyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	/**
+	 * Creates the verdict cache from the settings
+	 * 
+	 * @return The cache, or null if caching is turned off
+	 */
+	private static VerdictCache createVerdictCache() {
+		if (VERDICT_CACHE_SIZE <= 0) {
+			return null;
+		}
+		VerdictCache.Eviction eviction;
+		try {
+			eviction = VerdictCache.Eviction.valueOf(VERDICT_CACHE_EVICTION);
+		} catch (IllegalArgumentException iae) {
+			System.out.println("Unknown eviction " + VERDICT_CACHE_EVICTION);
+			eviction = VerdictCache.Eviction.FIFO;
+		}
+		return new VerdictCache(Math.max(VERDICT_CACHE_SIZE, 4), 4, eviction);
+	}
+
+	/**
+	 * Returns true if the dictionary has loaded
+	 * 
+	 * @return Whether the dictionary is ready
+	 */
+	public boolean isReady() {
+		return dictionary != null;
+	}
+
+	/**
+	 * Finds the misspelled word at a position in the text area
+	 * 
+	 * @param offset
+	 *            The position in the document
+	 * @return The letters of the misspelled word, or null if the word there is
+	 *         spelled correctly
+	 */
+	public Span getMisspelledWordAt(int offset) {
+		SpellAnalyzer analyzer = this.analyzer;
+		if (analyzer == null) {
+			return null;
+		}
+		DefaultStyledDocument document = textField.getDefaultDocument();
+		Segment segment = new Segment();
+		int start = offset, end = offset;
 		try {
-			String[] split = textField.getTextPane().getText(0, cursor)
-					.split(" ");
-			Word word = new Word(split[split.length - 1]);
-			int docLength = textField.getTextPane().getCaretPosition() + 1;
-			int length = split[split.length - 1].length() + 1;
-			StyleConstants.setForeground(textField.getAttributeSet(),
-					textField.getCorrectColor());
-			String replacement = word.getWord();
-			if (word.isWord(dictionary)) {
-				StyleConstants.setForeground(textField.getAttributeSet(),
-						textField.getCorrectColor());
-			} else {
-				StyleConstants.setForeground(textField.getAttributeSet(),
-						textField.getIncorrectColor());
+			while (start > 0
+					&& classifyAt(document, start - 1, segment) != WordTokenizer.SEPARATOR) {
+				start--;
+			}
+			while (end < document.getLength()
+					&& classifyAt(document, end, segment) != WordTokenizer.SEPARATOR) {
+				end++;
+			}
+			if (start == end) {
+				return null;
 			}
-			textField.getDefaultDocument().replace(
-					docLength - length,
-					textField.getTextPane().getCaretPosition()
-							- (docLength - length), replacement,
-					textField.getAttributeSet());
+			document.getText(start, end - start, segment);
 		} catch (BadLocationException ble) {
-			System.out.println("Couldn't replace string");
+			return null;
 		}
+		if (analyzer.analyze(segment).isEmpty()) {
+			return null;
+		}
+		int first = 0, last = segment.length();
+		while (WordTokenizer.classify(segment.charAt(first)) != WordTokenizer.LETTER) {
+			first++;
+		}
+		while (WordTokenizer.classify(segment.charAt(last - 1)) != WordTokenizer.LETTER) {
+			last--;
+		}
+		return new Span(start + first, start + last);
 	}
 
 	/**
-	 * Checks the spelling of the main text area
+	 * Gets the class of the character at a position
+	 * 
+	 * @param document
+	 *            The document to read from
+	 * @param position
+	 *            The position of the character
+	 * @param segment
+	 *            A segment to read into
+	 * @return The class from WordTokenizer
+	 * @throws BadLocationException
+	 *             If the position is outside the document
 	 */
-	public void checkTextArea() {
-		errorsFound = 0;
+	private static byte classifyAt(DefaultStyledDocument document,
+			int position, Segment segment) throws BadLocationException {
+		document.getText(position, 1, segment);
+		return WordTokenizer.classify(segment.first());
+	}
+
+	/**
+	 * Checks the spelling of the last word. The word is found by scanning back
+	 * from the cursor through a small window of the document, so the cost
+	 * depends on the length of the word rather than of the document.
+	 * 
+	 * @param cursor
+	 *            The position of the cursor
+	 * @return The start of the last word, or the cursor if there is no word
+	 *         before it
+	 */
+	public int checkLastWord(int cursor) {
+		SpellAnalyzer analyzer = this.analyzer;
+		if (analyzer == null) {
+			checkPending = true;
+			return cursor;
+		}
+		long started = System.nanoTime();
 		try {
-			String[] split = textField.getTextPane().getText().split(" ");
-			ArrayList<Word> words = new ArrayList<Word>();
-			for (String s : split) {
-				words.add(new Word(s));
-			}
-			textField.getTextPane().setText("");
-			for (int i = 0; i < words.size(); i++) {
-				String add;
-				if (i == words.size() - 1) {
-					add = "";
-				} else {
-					add = " ";
+			Document document = textField.getTextPane().getDocument();
+			int window = LAST_WORD_WINDOW;
+			while (true) {
+				int from = Math.max(0, cursor - window);
+				document.getText(from, cursor - from, lastWordSegment);
+				int end = lastWordSegment.length();
+				while (end > 0
+						&& WordTokenizer.classify(lastWordSegment.charAt(end - 1)) == WordTokenizer.SEPARATOR) {
+					end--;
 				}
-				if (words.get(i).isWord(dictionary)) {
-					StyleConstants.setForeground(textField.getAttributeSet(),
-							textField.getCorrectColor());
-					textField.getDefaultDocument().insertString(
-							textField.getDefaultDocument().getLength(),
-							words.get(i).getWord() + add, textField.getAttributeSet());
-				} else {
-					errorsFound++;
-					StyleConstants.setForeground(textField.getAttributeSet(),
-							textField.getIncorrectColor());
-					textField.getDefaultDocument().insertString(
-							textField.getDefaultDocument().getLength(),
-							words.get(i).getWord() + add, textField.getAttributeSet());
+				int start = end;
+				while (start > 0
+						&& WordTokenizer.classify(lastWordSegment.charAt(start - 1)) != WordTokenizer.SEPARATOR) {
+					start--;
 				}
+				if (start == 0 && from > 0) {
+					// The word may carry on before the window
+					window *= 2;
+					continue;
+				}
+				if (start == end) {
+					return cursor;
+				}
+				highlighter.render(from + start, from + end, analyzer.analyze(
+						lastWordSegment, start, end, from));
+				return from + start;
 			}
 		} catch (BadLocationException ble) {
-			System.out.println("Couldn't insert string");
+			System.out.println("Couldn't check word");
+			return cursor;
+		} finally {
+			EditorMetrics.CHECK_LAST_WORD.recordSince(started);
 		}
 	}
 
+	/**
+	 * Checks the spelling of the main text area in the background
+	 */
+	public void checkTextArea() {
+		checkTextArea(null);
+	}
+
+	/**
+	 * Checks the spelling of the main text area in the background. A check
+	 * already running is cancelled first.
+	 * 
+	 * @param whenDone
+	 *            Run on the event dispatch thread once the check finishes, or
+	 *            null
+	 */
+	public void checkTextArea(Runnable whenDone) {
+		restartScheduler.cancel();
+		this.whenDone = whenDone;
+		if (dictionary == null) {
+			checkPending = true;
+			return;
+		}
+		cancelCheck();
+		final SpellCheckWorker started = new SpellCheckWorker(textField,
+				highlighter, analyzer, resultCache);
+		started.addPropertyChangeListener(event -> {
+			if ("progress".equals(event.getPropertyName())) {
+				if (progressListener != null && started == worker) {
+					progressListener.accept((Integer) event.getNewValue());
+				}
+			} else if (event.getNewValue() == SwingWorker.StateValue.DONE) {
+				finishCheck(started);
+			}
+		});
+		started.setVisibleRange(visibleStart, visibleEnd);
+		worker = started;
+		// The new check covers every edit made so far, such as loading a file
+		incrementalChecker.discardEdits();
+		checkStarted = System.nanoTime();
+		started.execute();
+	}
+
+	/**
+	 * Cancels the background check if one is running
+	 */
+	public void cancelCheck() {
+		if (worker != null) {
+			worker.cancel(false);
+			worker = null;
+		}
+	}
+
+	/**
+	 * Stops checking the text area and lets its dictionary be dropped. The
+	 * spell checker should not be used afterwards.
+	 */
+	public void dispose() {
+		if (disposed) {
+			return;
+		}
+		disposed = true;
+		cancelCheck();
+		restartScheduler.cancel();
+		incrementalChecker.getScheduler().cancel();
+		textField.getDefaultDocument().removeDocumentListener(restartListener);
+		textField.getDefaultDocument().removeDocumentListener(
+				incrementalChecker);
+		textField.getTextPane().removeCaretListener(incrementalChecker);
+		DictionaryRegistry.release(language);
+		if (previousLanguage != null) {
+			DictionaryRegistry.release(previousLanguage);
+		}
+	}
+
+	/**
+	 * Returns true if a background check is running or waiting to restart
+	 * 
+	 * @return Whether the text area is being checked
+	 */
+	public boolean isChecking() {
+		return worker != null || restartScheduler.isPending();
+	}
+
+	/**
+	 * Checks the part of the text area shown in a viewport before the rest,
+	 * following the viewport as it scrolls
+	 * 
+	 * @param viewport
+	 *            The viewport showing the text area
+	 */
+	public void followViewport(JViewport viewport) {
+		viewport.addChangeListener(event -> {
+			Rectangle view = viewport.getViewRect();
+			JTextPane textPane = textField.getTextPane();
+			int start = Math.max(0,
+					textPane.viewToModel(view.getLocation()));
+			int end = textPane.viewToModel(new Point(view.x + view.width,
+					view.y + view.height));
+			setVisibleRange(start, Math.max(start, end));
+		});
+	}
+
+	/**
+	 * Sets the part of the text area on screen, which background checks look
+	 * at first
+	 * 
+	 * @param start
+	 *            The first position on screen
+	 * @param end
+	 *            The last position on screen
+	 */
+	public void setVisibleRange(int start, int end) {
+		visibleStart = start;
+		visibleEnd = end;
+		if (worker != null) {
+			worker.setVisibleRange(start, end);
+		}
+	}
+
+	/**
+	 * Gets the checker that rechecks the words touched by edits
+	 * 
+	 * @return The incremental checker
+	 */
+	IncrementalSpellChecker getIncrementalChecker() {
+		return incrementalChecker;
+	}
+
+	/**
+	 * Asks for the words touched by recent edits to be checked once the user
+	 * stops typing, rather than straight away
+	 */
+	public void requestCheck() {
+		incrementalChecker.getScheduler().request();
+	}
+
+	/**
+	 * Returns true if edits are waiting for the user to stop typing before
+	 * they are checked
+	 * 
+	 * @return Whether a check is scheduled
+	 */
+	public boolean isCheckScheduled() {
+		return incrementalChecker.getScheduler().isPending();
+	}
+
+	/**
+	 * Sets the listener told how far through the text area a check is
+	 * 
+	 * @param progressListener
+	 *            Receives the progress as a percentage, or null
+	 */
+	public void setProgressListener(IntConsumer progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Records the result of a finished check
+	 * 
+	 * @param finished
+	 *            The worker that finished
+	 */
+	private void finishCheck(SpellCheckWorker finished) {
+		if (finished != worker) {
+			return;
+		}
+		worker = null;
+		try {
+			errorsFound = finished.get();
+			EditorMetrics.CHECK_TEXT_AREA.recordSince(checkStarted);
+			EditorMetrics.recordErrorsFound(errorsFound);
+		} catch (InterruptedException | ExecutionException ex) {
+			System.out.println("Couldn't check spelling");
+		}
+		Runnable callback = whenDone;
+		whenDone = null;
+		if (callback != null) {
+			callback.run();
+		}
+	}
+
+	/**
+	 * Restarts a running check after the user edits the text area, since the
+	 * positions it found no longer line up with the document. The check is
+	 * cancelled straight away but only started again once the user stops
+	 * typing, so a burst of edits restarts it once.
+	 */
+	private void restartCheck() {
+		if (worker == null && !restartScheduler.isPending()) {
+			return;
+		}
+		cancelCheck();
+		restartScheduler.request();
+	}
+
 	/**
 	 * Returns the number of errors found
 	 * 
@@ -108,6 +585,15 @@ public class SpellChecker {
 		return errorsFound;
 	}
 
+	/**
+	 * Gets the layer that marks misspelled words
+	 * 
+	 * @return The highlighter
+	 */
+	public MisspellingHighlighter getHighlighter() {
+		return highlighter;
+	}
+
 	/**
 	 * Gets textField
 	 * 
@@ -0,0 +1,439 @@
+package spelling;
+
+import file.CacheDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Suggests corrections for misspelled words using a symmetric delete index.
+ * Every dictionary word is indexed under the strings made by deleting up to
+ * two characters from its prefix, so a misspelling only has to generate its
+ * own deletes and look them up instead of searching the whole dictionary.
+ * The index is written to the cache directory and memory-mapped on later
+ * runs, and is replaced through a temporary file when the dictionary
+ * changes.
+ * <p>
+ * Only the words stored in the dictionary are indexed. For a Hunspell
+ * dictionary those are the stems, so inflected forms such as plurals are
+ * never suggested, only the stems they are built from.
+ *
+ * @author Inderpreet
+ */
+public class SuggestionEngine {
+
+	public static final int MAX_DISTANCE = 2;
+	public static final int PREFIX_LENGTH = 7;
+
+	/**
+	 * The log probability of making one edit while typing a word, used when
+	 * ranking suggestions by context
+	 */
+	private static final double EDIT_LOG_PROBABILITY = Math.log(0.001);
+
+	private static final int MAGIC = 0x44524753;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 20;
+	private static final int BUCKETS = 1 << 16;
+
+	private final Dictionary dictionary;
+	private final IntBuffer bucketStarts;
+	private final IntBuffer hashes;
+	private final IntBuffer ids;
+
+	/**
+	 * A dictionary word close to the misspelling
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+
+		private final int id;
+		private final String word;
+		private final int distance;
+		private final int lengthDifference;
+		private double score;
+
+		Candidate(int id, String word, int distance, int lengthDifference) {
+			this.id = id;
+			this.word = word;
+			this.distance = distance;
+			this.lengthDifference = lengthDifference;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			if (distance != other.distance) {
+				return distance - other.distance;
+			}
+			if (lengthDifference != other.lengthDifference) {
+				return lengthDifference - other.lengthDifference;
+			}
+			return word.compareTo(other.word);
+		}
+	}
+
+	/**
+	 * Reads an index from a buffer
+	 *
+	 * @param dictionary
+	 *            The dictionary the index was built from
+	 * @param buffer
+	 *            The index
+	 */
+	private SuggestionEngine(Dictionary dictionary, ByteBuffer buffer) {
+		this.dictionary = dictionary;
+		int count = buffer.getInt(16);
+		int position = HEADER_SIZE;
+		bucketStarts = Dictionary.section(buffer, position, (BUCKETS + 1) * 4)
+				.asIntBuffer();
+		position += (BUCKETS + 1) * 4;
+		hashes = Dictionary.section(buffer, position, count * 4).asIntBuffer();
+		position += count * 4;
+		ids = Dictionary.section(buffer, position, count * 4).asIntBuffer();
+	}
+
+	/**
+	 * Opens the index for a dictionary, building and saving it if there is no
+	 * up to date copy in the cache directory. This can take a few seconds so
+	 * it should not be called on the event dispatch thread.
+	 *
+	 * @param dictionary
+	 *            The dictionary to suggest words from
+	 * @param name
+	 *            The name of the dictionary
+	 * @return The suggestion engine
+	 */
+	public static SuggestionEngine open(Dictionary dictionary, String name) {
+		File file = CacheDirectory.getFile(name + ".suggest");
+		try {
+			// Only map the file once it is known to be current, so a stale
+			// one is never mapped while it is replaced
+			ByteBuffer header = Dictionary.readHeader(file, HEADER_SIZE);
+			if (header != null && isCurrent(header, dictionary)) {
+				return new SuggestionEngine(dictionary, Dictionary.map(file));
+			}
+			DictionaryCompiler.write(build(dictionary), file);
+			return new SuggestionEngine(dictionary, Dictionary.map(file));
+		} catch (IOException ioe) {
+			System.out.println("Could not save suggestions, keeping them in memory");
+		}
+		return new SuggestionEngine(dictionary, build(dictionary));
+	}
+
+	/**
+	 * Gets roughly how much memory the index takes
+	 *
+	 * @return The size in bytes
+	 */
+	public long getSizeInBytes() {
+		return (bucketStarts.capacity() + hashes.capacity() + ids.capacity()) * 4L;
+	}
+
+	/**
+	 * Suggests dictionary words close to a misspelling, closest first
+	 *
+	 * @param word
+	 *            The misspelled word
+	 * @param maxSuggestions
+	 *            The most suggestions to return
+	 * @return The suggestions
+	 */
+	public List<String> suggest(CharSequence word, int maxSuggestions) {
+		ArrayList<Candidate> candidates = findCandidates(word);
+		Collections.sort(candidates);
+		return firstWords(candidates, maxSuggestions);
+	}
+
+	/**
+	 * Suggests dictionary words close to a misspelling, ranked by how well
+	 * they fit between the words around it as well as by how close they are.
+	 * Each edit counts as a fixed drop in log probability, so a word one edit
+	 * further away has to be far more likely in context to rank higher.
+	 *
+	 * @param word
+	 *            The misspelled word
+	 * @param previous
+	 *            The word before the misspelling, or null
+	 * @param next
+	 *            The word after the misspelling, or null
+	 * @param model
+	 *            The word frequencies to rank by
+	 * @param maxSuggestions
+	 *            The most suggestions to return
+	 * @return The suggestions
+	 */
+	public List<String> suggest(CharSequence word, CharSequence previous,
+			CharSequence next, NgramModel model, int maxSuggestions) {
+		ArrayList<Candidate> candidates = findCandidates(word);
+		if (model == null || model.isEmpty()) {
+			Collections.sort(candidates);
+			return firstWords(candidates, maxSuggestions);
+		}
+		int previousId = model.indexOf(previous);
+		int nextId = model.indexOf(next);
+		for (Candidate candidate : candidates) {
+			candidate.score = model.score(previousId, candidate.id, nextId)
+					+ candidate.distance * EDIT_LOG_PROBABILITY;
+		}
+		candidates.sort((a, b) -> a.score != b.score ? Double.compare(b.score,
+				a.score) : a.compareTo(b));
+		return firstWords(candidates, maxSuggestions);
+	}
+
+	/**
+	 * Finds the dictionary words within the largest distance of a misspelling
+	 *
+	 * @param word
+	 *            The misspelled word
+	 * @return The words found, in no particular order
+	 */
+	private ArrayList<Candidate> findCandidates(CharSequence word) {
+		ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+		String input = WordTokenizer.normalize(word);
+		if (input.isEmpty()) {
+			return candidates;
+		}
+		Set<String> deletes = new HashSet<String>();
+		String prefix = input.substring(0,
+				Math.min(PREFIX_LENGTH, input.length()));
+		deletes.add(prefix);
+		addDeletes(prefix, MAX_DISTANCE, deletes);
+
+		BitSet seen = new BitSet(dictionary.size());
+		for (String delete : deletes) {
+			int hash = hash(delete);
+			for (int i = find(hash); i < hashes.capacity()
+					&& hashes.get(i) == hash; i++) {
+				int id = ids.get(i);
+				if (seen.get(id)) {
+					continue;
+				}
+				seen.set(id);
+				String candidate = dictionary.getWord(id);
+				int lengthDifference = Math.abs(candidate.length()
+						- input.length());
+				if (lengthDifference > MAX_DISTANCE) {
+					continue;
+				}
+				int distance = distance(input, candidate, MAX_DISTANCE);
+				if (distance <= MAX_DISTANCE) {
+					candidates.add(new Candidate(id, candidate, distance,
+							lengthDifference));
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Takes the words of the first few candidates
+	 *
+	 * @param candidates
+	 *            The candidates, best first
+	 * @param max
+	 *            The most words to take
+	 * @return The words
+	 */
+	private static List<String> firstWords(List<Candidate> candidates, int max) {
+		ArrayList<String> suggestions = new ArrayList<String>();
+		for (int i = 0; i < candidates.size() && i < max; i++) {
+			suggestions.add(candidates.get(i).word);
+		}
+		return suggestions;
+	}
+
+	/**
+	 * Finds the first index entry with a hash
+	 *
+	 * @param hash
+	 *            The hash to find
+	 * @return The index of the first entry not below the hash
+	 */
+	private int find(int hash) {
+		int bucket = bucket(hash);
+		int low = bucketStarts.get(bucket);
+		int high = bucketStarts.get(bucket + 1);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (hashes.get(middle) < hash) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Builds the index for a dictionary
+	 *
+	 * @param dictionary
+	 *            The dictionary to index
+	 * @return The index in its saved format
+	 */
+	private static ByteBuffer build(Dictionary dictionary) {
+		long[] entries = new long[1 << 20];
+		int count = 0;
+		Set<String> deletes = new HashSet<String>();
+		for (int id = 0; id < dictionary.size(); id++) {
+			String word = dictionary.getWord(id);
+			if (word.trim().isEmpty()) {
+				continue;
+			}
+			String prefix = word.substring(0,
+					Math.min(PREFIX_LENGTH, word.length()));
+			deletes.clear();
+			deletes.add(prefix);
+			addDeletes(prefix, MAX_DISTANCE, deletes);
+			if (count + deletes.size() > entries.length) {
+				entries = Arrays.copyOf(entries, entries.length * 2);
+			}
+			for (String delete : deletes) {
+				entries[count++] = (long) hash(delete) << 32 | id;
+			}
+		}
+		Arrays.sort(entries, 0, count);
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (BUCKETS + 1)
+				* 4 + count * 8);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(dictionary.getChecksum());
+		buffer.putInt(dictionary.size());
+		buffer.putInt(count);
+		int bucketsAt = HEADER_SIZE;
+		int hashesAt = bucketsAt + (BUCKETS + 1) * 4;
+		int idsAt = hashesAt + count * 4;
+		int bucket = 0;
+		for (int i = 0; i < count; i++) {
+			int hash = (int) (entries[i] >> 32);
+			while (bucket <= bucket(hash)) {
+				buffer.putInt(bucketsAt + bucket++ * 4, i);
+			}
+			buffer.putInt(hashesAt + i * 4, hash);
+			buffer.putInt(idsAt + i * 4, (int) entries[i]);
+		}
+		while (bucket <= BUCKETS) {
+			buffer.putInt(bucketsAt + bucket++ * 4, count);
+		}
+		buffer.rewind();
+		return buffer;
+	}
+
+	/**
+	 * Adds every string made by deleting up to a number of characters
+	 *
+	 * @param word
+	 *            The string to delete from
+	 * @param distance
+	 *            The most characters to delete
+	 * @param deletes
+	 *            The set to add to
+	 */
+	private static void addDeletes(String word, int distance,
+			Set<String> deletes) {
+		if (distance == 0 || word.length() <= 1) {
+			return;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			String delete = word.substring(0, i) + word.substring(i + 1);
+			if (deletes.add(delete)) {
+				addDeletes(delete, distance - 1, deletes);
+			}
+		}
+	}
+
+	/**
+	 * Computes the optimal string alignment distance between two words,
+	 * giving up once it is larger than a limit
+	 *
+	 * @param a
+	 *            The first word
+	 * @param b
+	 *            The second word
+	 * @param limit
+	 *            The largest distance of interest
+	 * @return The distance, or limit + 1 if it is larger than the limit
+	 */
+	static int distance(String a, String b, int limit) {
+		int[] previousPrevious = new int[b.length() + 1];
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int rowMinimum = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				int value = Math.min(Math.min(previous[j] + 1,
+						current[j - 1] + 1), previous[j - 1] + cost);
+				if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2)
+						&& a.charAt(i - 2) == b.charAt(j - 1)) {
+					value = Math.min(value, previousPrevious[j - 2] + 1);
+				}
+				current[j] = value;
+				rowMinimum = Math.min(rowMinimum, value);
+			}
+			if (rowMinimum > limit) {
+				return limit + 1;
+			}
+			int[] recycled = previousPrevious;
+			previousPrevious = previous;
+			previous = current;
+			current = recycled;
+		}
+		return Math.min(previous[b.length()], limit + 1);
+	}
+
+	/**
+	 * Hashes a string for the index
+	 *
+	 * @param word
+	 *            The string to hash
+	 * @return The hash
+	 */
+	private static int hash(String word) {
+		int hash = Dictionary.FNV_OFFSET;
+		for (int i = 0; i < word.length(); i++) {
+			hash = (hash ^ word.charAt(i)) * Dictionary.FNV_PRIME;
+		}
+		return Dictionary.mix(hash);
+	}
+
+	/**
+	 * Gets the bucket of a hash, in the same order as the hashes sort
+	 *
+	 * @param hash
+	 *            The hash
+	 * @return The bucket
+	 */
+	private static int bucket(int hash) {
+		return (hash >> 16) + (BUCKETS >> 1);
+	}
+
+	/**
+	 * Returns true if a saved index was built from a dictionary
+	 *
+	 * @param buffer
+	 *            The header of the saved index
+	 * @param dictionary
+	 *            The dictionary
+	 * @return Whether the index can be used
+	 */
+	private static boolean isCurrent(ByteBuffer buffer, Dictionary dictionary) {
+		return buffer.capacity() >= HEADER_SIZE && buffer.getInt(0) == MAGIC
+				&& buffer.getInt(4) == VERSION
+				&& buffer.getInt(8) == dictionary.getChecksum()
+				&& buffer.getInt(12) == dictionary.size();
+	}
+}
@@ -0,0 +1,488 @@
+package spelling;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Words the user has added to the dictionary. They are saved to an append
+ * only log next to the settings file, which is compacted in the background
+ * when it holds duplicates. Appending and compacting both hold a lock on a
+ * file next to the log, so a word another editor appends while the log is
+ * being compacted is never lost. The words in memory are an immutable hash
+ * table that is copied and swapped in whenever a word is added, so lookups
+ * from any thread never lock and never see a half added word. A dictionary
+ * opened with {@link #readOnly(File)} only reads its file and never changes
+ * it.
+ *
+ * @author Inderpreet
+ */
+public class UserDictionary {
+
+	public static final String FILENAME = "DragynTextEdit.words";
+
+	private static UserDictionary defaultDictionary;
+
+	private final File file;
+	private final File lockFile;
+	private final boolean readOnly;
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(
+			new Snapshot(new String[16], 0));
+	private final ExecutorService writer = Executors
+			.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "User Dictionary Writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * Work done on the log while holding its lock
+	 */
+	private interface LogAction {
+		void run() throws IOException;
+	}
+
+	/**
+	 * An immutable hash table of words
+	 */
+	private static final class Snapshot {
+
+		private final String[] slots;
+		private final int size;
+
+		Snapshot(String[] slots, int size) {
+			this.slots = slots;
+			this.size = size;
+		}
+
+		/**
+		 * Returns true if the letters of part of a sequence are in the table
+		 *
+		 * @param hash
+		 *            The dictionary hash of the letters
+		 * @param text
+		 *            The sequence holding the word
+		 * @param start
+		 *            The index of the first character of the word
+		 * @param end
+		 *            The index after the last character of the word
+		 * @param length
+		 *            The number of letters in the word
+		 * @return Whether the word is in the table
+		 */
+		boolean contains(int hash, CharSequence text, int start, int end,
+				int length) {
+			if (size == 0) {
+				return false;
+			}
+			int mask = slots.length - 1;
+			for (int slot = Dictionary.mix(hash) & mask;; slot = (slot + 1)
+					& mask) {
+				String word = slots[slot];
+				if (word == null) {
+					return false;
+				}
+				if (matches(word, text, start, end, length)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Creates a copy of the table with another word in it
+		 *
+		 * @param word
+		 *            The normalized word to add
+		 * @return The new table
+		 */
+		Snapshot with(String word) {
+			String[] copy;
+			if ((size + 1) * 2 > slots.length) {
+				copy = new String[slots.length * 2];
+				for (String existing : slots) {
+					if (existing != null) {
+						insert(copy, existing);
+					}
+				}
+			} else {
+				copy = slots.clone();
+			}
+			insert(copy, word);
+			return new Snapshot(copy, size + 1);
+		}
+
+		/**
+		 * Gets the words in the table
+		 *
+		 * @return The words in no particular order
+		 */
+		List<String> words() {
+			ArrayList<String> words = new ArrayList<String>(size);
+			for (String word : slots) {
+				if (word != null) {
+					words.add(word);
+				}
+			}
+			return words;
+		}
+
+		/**
+		 * Puts a word into a table
+		 *
+		 * @param slots
+		 *            The table
+		 * @param word
+		 *            The word
+		 */
+		private static void insert(String[] slots, String word) {
+			int mask = slots.length - 1;
+			int slot = Dictionary.mix(hash(word)) & mask;
+			while (slots[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = word;
+		}
+
+		/**
+		 * Compares a stored word against the letters of part of a sequence
+		 *
+		 * @param word
+		 *            The stored word
+		 * @param text
+		 *            The sequence holding the word
+		 * @param start
+		 *            The index of the first character of the word
+		 * @param end
+		 *            The index after the last character of the word
+		 * @param length
+		 *            The number of letters in the word
+		 * @return Whether they are equal
+		 */
+		private static boolean matches(String word, CharSequence text,
+				int start, int end, int length) {
+			if (word.length() != length) {
+				return false;
+			}
+			int position = 0;
+			for (int i = start; i < end; i++) {
+				char c = text.charAt(i);
+				if (WordTokenizer.classify(c) == WordTokenizer.LETTER
+						&& word.charAt(position++) != Character.toLowerCase(c)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Opens a user dictionary, reading any words already saved in it
+	 *
+	 * @param file
+	 *            The log file
+	 */
+	public UserDictionary(File file) {
+		this(file, false);
+	}
+
+	/**
+	 * Opens a user dictionary
+	 *
+	 * @param file
+	 *            The log file
+	 * @param readOnly
+	 *            Whether the log must be left as it is
+	 */
+	private UserDictionary(File file, boolean readOnly) {
+		this.file = file;
+		this.readOnly = readOnly;
+		lockFile = new File(file.getPath() + ".lock");
+		load();
+	}
+
+	/**
+	 * Reads the words in a file without ever changing it. Words cannot be
+	 * added, and duplicates in the file are left there.
+	 *
+	 * @param file
+	 *            The file of words, one on each line
+	 * @return The user dictionary
+	 */
+	public static UserDictionary readOnly(File file) {
+		return new UserDictionary(file, true);
+	}
+
+	/**
+	 * Gets the user dictionary kept next to the settings file
+	 *
+	 * @return The user dictionary
+	 */
+	public static synchronized UserDictionary getDefault() {
+		if (defaultDictionary == null) {
+			defaultDictionary = new UserDictionary(new File(FILENAME));
+		}
+		return defaultDictionary;
+	}
+
+	/**
+	 * Returns true if the user has added a word
+	 *
+	 * @param word
+	 *            The word
+	 * @return Whether the word has been added
+	 */
+	public boolean contains(CharSequence word) {
+		String normalized = WordTokenizer.normalize(word);
+		return snapshot.get().contains(hash(normalized), normalized, 0,
+				normalized.length(), normalized.length());
+	}
+
+	/**
+	 * Returns true if the user has added the letters of part of a sequence
+	 *
+	 * @param hash
+	 *            The dictionary hash of the letters
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @param length
+	 *            The number of letters in the word
+	 * @return Whether the word has been added
+	 */
+	boolean contains(int hash, CharSequence text, int start, int end,
+			int length) {
+		return snapshot.get().contains(hash, text, start, end, length);
+	}
+
+	/**
+	 * Adds a word and saves it in the background
+	 *
+	 * @param word
+	 *            The word to add
+	 * @return Whether the word was new, which is never the case for a read
+	 *         only dictionary
+	 */
+	public boolean add(CharSequence word) {
+		String normalized = WordTokenizer.normalize(word);
+		if (readOnly || normalized.isEmpty() || !addToSnapshot(normalized)) {
+			return false;
+		}
+		writer.execute(() -> append(normalized));
+		return true;
+	}
+
+	/**
+	 * Gets the number of words added
+	 *
+	 * @return The number of words
+	 */
+	public int size() {
+		return snapshot.get().size;
+	}
+
+	/**
+	 * Gets the words added, sorted
+	 *
+	 * @return The words
+	 */
+	public List<String> getWords() {
+		List<String> words = snapshot.get().words();
+		Collections.sort(words);
+		return words;
+	}
+
+	/**
+	 * Publishes a new table with a word added, retrying if another thread
+	 * added a word at the same time
+	 *
+	 * @param word
+	 *            The normalized word
+	 * @return Whether the word was new
+	 */
+	private boolean addToSnapshot(String word) {
+		Snapshot current;
+		Snapshot next;
+		do {
+			current = snapshot.get();
+			if (current.contains(hash(word), word, 0, word.length(),
+					word.length())) {
+				return false;
+			}
+			next = current.with(word);
+		} while (!snapshot.compareAndSet(current, next));
+		return true;
+	}
+
+	/**
+	 * Reads the log, compacting it in the background if it holds duplicates
+	 */
+	private void load() {
+		if (!file.isFile()) {
+			return;
+		}
+		int lines = 0;
+		try (BufferedReader bufferedReader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file),
+						StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = bufferedReader.readLine()) != null) {
+				lines++;
+				String normalized = WordTokenizer.normalize(line);
+				if (!normalized.isEmpty()) {
+					addToSnapshot(normalized);
+				}
+			}
+		} catch (IOException ioe) {
+			System.out.println("Could not load user dictionary");
+		}
+		if (lines > size() && !readOnly) {
+			writer.execute(this::compact);
+		}
+	}
+
+	/**
+	 * Appends a word to the log
+	 *
+	 * @param word
+	 *            The word
+	 */
+	private void append(String word) {
+		try {
+			withLock(() -> {
+				try (BufferedWriter bufferedWriter = new BufferedWriter(
+						new OutputStreamWriter(new FileOutputStream(file, true),
+								StandardCharsets.UTF_8))) {
+					bufferedWriter.write(word);
+					bufferedWriter.newLine();
+				}
+			});
+		} catch (IOException ioe) {
+			System.out.println("Could not save word");
+		}
+	}
+
+	/**
+	 * Rewrites the log with each word once. The log is read again under the
+	 * lock first, so words other editors appended since this one loaded are
+	 * kept, and none can be appended until the new log is in place.
+	 */
+	private void compact() {
+		try {
+			withLock(() -> {
+				try (BufferedReader bufferedReader = new BufferedReader(
+						new InputStreamReader(new FileInputStream(file),
+								StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = bufferedReader.readLine()) != null) {
+						String normalized = WordTokenizer.normalize(line);
+						if (!normalized.isEmpty()) {
+							addToSnapshot(normalized);
+						}
+					}
+				}
+				File tempFile = Files.createTempFile(
+						file.getAbsoluteFile().getParentFile().toPath(),
+						file.getName() + ".", ".tmp").toFile();
+				try {
+					// The temporary file is only readable by its owner
+					copyPermissions(file.toPath(), tempFile.toPath());
+					try (BufferedWriter bufferedWriter = new BufferedWriter(
+							new OutputStreamWriter(new FileOutputStream(
+									tempFile), StandardCharsets.UTF_8))) {
+						for (String word : getWords()) {
+							bufferedWriter.write(word);
+							bufferedWriter.newLine();
+						}
+					}
+					Files.move(tempFile.toPath(), file.toPath(),
+							StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} finally {
+					Files.deleteIfExists(tempFile.toPath());
+				}
+			});
+		} catch (IOException ioe) {
+			System.out.println("Could not compact user dictionary");
+		}
+	}
+
+	/**
+	 * Runs work on the log while holding the lock every editor takes before
+	 * changing it. Editors in the same process also take turns, since a
+	 * process can only hold one lock on a file.
+	 *
+	 * @param action
+	 *            The work
+	 * @throws IOException
+	 *             If the lock could not be taken or the work failed
+	 */
+	private void withLock(LogAction action) throws IOException {
+		synchronized (UserDictionary.class) {
+			try (FileChannel channel = FileChannel.open(lockFile.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				FileLock lock = channel.lock();
+				try {
+					action.run();
+				} finally {
+					lock.release();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gives a file the permissions of another, where the file system has
+	 * them
+	 *
+	 * @param from
+	 *            The file to copy the permissions of
+	 * @param to
+	 *            The file to change
+	 * @throws IOException
+	 *             If the permissions could not be read or changed
+	 */
+	private static void copyPermissions(Path from, Path to) throws IOException {
+		if (Files.getFileStore(from).supportsFileAttributeView(
+				PosixFileAttributeView.class)) {
+			Files.setPosixFilePermissions(to,
+					Files.getPosixFilePermissions(from));
+		}
+	}
+
+	/**
+	 * Hashes a normalized word the same way the dictionary does
+	 *
+	 * @param word
+	 *            The word
+	 * @return The hash
+	 */
+	private static int hash(String word) {
+		int hash = Dictionary.FNV_OFFSET;
+		for (int i = 0; i < word.length(); i++) {
+			hash = (hash ^ word.charAt(i)) * Dictionary.FNV_PRIME;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,190 @@
+package spelling;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of recent dictionary verdicts, keyed by a 64 bit hash of
+ * the word's letters. Entries are packed into a single long so the cache
+ * holds no objects, and it is split into small sets that are each kept in
+ * least recently used or insertion order. Readers and writers never lock; a
+ * race can only reorder or drop an entry, never return a verdict for the
+ * wrong word. Entries do not say which dictionary gave the verdict, so each
+ * cache must only ever be used with one dictionary.
+ *
+ * @author Inderpreet
+ */
+public class VerdictCache {
+
+	/**
+	 * How entries are chosen for eviction
+	 */
+	public enum Eviction {
+		/** Hits move an entry forward, so the least recently used goes */
+		LRU,
+		/** Hits change nothing, so the oldest entry goes */
+		FIFO
+	}
+
+	public static final int UNKNOWN = -1;
+	public static final int MISSPELLED = 0;
+	public static final int CORRECT = 1;
+
+	private static final long MARKER = 2L;
+
+	private final AtomicLongArray entries;
+	private final int ways;
+	private final int setMask;
+	private final Eviction eviction;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates an empty cache
+	 *
+	 * @param capacity
+	 *            The most verdicts to keep, rounded up to a power of two
+	 * @param ways
+	 *            The number of entries in each set, which must divide the
+	 *            capacity
+	 * @param eviction
+	 *            How entries are evicted within a set
+	 */
+	public VerdictCache(int capacity, int ways, Eviction eviction) {
+		if (ways < 1 || capacity < ways) {
+			throw new IllegalArgumentException("Invalid cache size");
+		}
+		int sets = Integer.highestOneBit(Math.max(1, (capacity + ways - 1)
+				/ ways) * 2 - 1);
+		entries = new AtomicLongArray(sets * ways);
+		this.ways = ways;
+		this.setMask = sets - 1;
+		this.eviction = eviction;
+	}
+
+	/**
+	 * Looks up a verdict
+	 *
+	 * @param hash
+	 *            The 64 bit hash of the word
+	 * @return CORRECT, MISSPELLED or UNKNOWN if the word is not cached
+	 */
+	public int get(long hash) {
+		long key = key(hash);
+		int base = base(hash);
+		for (int i = 0; i < ways; i++) {
+			long entry = entries.get(base + i);
+			if ((entry & ~1L) == key) {
+				if (i > 0 && eviction == Eviction.LRU) {
+					// Swap towards the front of the set
+					entries.set(base + i, entries.get(base + i - 1));
+					entries.set(base + i - 1, entry);
+				}
+				hits.increment();
+				return (int) (entry & 1L);
+			}
+		}
+		misses.increment();
+		return UNKNOWN;
+	}
+
+	/**
+	 * Stores a verdict at the front of its set, evicting the last entry
+	 *
+	 * @param hash
+	 *            The 64 bit hash of the word
+	 * @param correct
+	 *            Whether the word is spelled correctly
+	 */
+	public void put(long hash, boolean correct) {
+		int base = base(hash);
+		for (int i = ways - 1; i > 0; i--) {
+			entries.set(base + i, entries.get(base + i - 1));
+		}
+		entries.set(base, key(hash) | (correct ? 1L : 0L));
+	}
+
+	/**
+	 * Removes every verdict, for when the dictionary's words change
+	 */
+	public void clear() {
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, 0L);
+		}
+	}
+
+	/**
+	 * Gets the number of lookups that found a verdict
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of lookups that did not find a verdict
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the share of lookups that found a verdict
+	 *
+	 * @return The hit rate between 0 and 1
+	 */
+	public double getHitRate() {
+		long hitCount = getHits();
+		long total = hitCount + getMisses();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * Gets the most verdicts the cache can hold
+	 *
+	 * @return The capacity
+	 */
+	public int getCapacity() {
+		return entries.length();
+	}
+
+	/**
+	 * Resets the hit and miss counters
+	 */
+	public void resetCounters() {
+		hits.reset();
+		misses.reset();
+	}
+
+	/**
+	 * Turns a hash into the stored key, leaving the lowest bit for the verdict
+	 * and setting a marker bit so no key is zero
+	 *
+	 * @param hash
+	 *            The hash
+	 * @return The key
+	 */
+	private static long key(long hash) {
+		return hash & ~3L | MARKER;
+	}
+
+	/**
+	 * Gets the index of the first entry in the set for a hash
+	 *
+	 * @param hash
+	 *            The hash
+	 * @return The index
+	 */
+	private int base(long hash) {
+		return ((int) (hash >>> 32) & setMask) * ways;
+	}
+
+	@Override
+	public String toString() {
+		return "Verdict cache: " + getHits() + " hits, " + getMisses()
+				+ " misses (" + Math.round(getHitRate() * 100) + "%)";
+	}
+}
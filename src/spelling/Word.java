@@ -1,7 +1,5 @@
 package spelling;
 
-import java.util.ArrayList;
-
 /**
  * @author Inderpreet
  * @date Oct 7, 2014
@@ -9,7 +7,6 @@ import java.util.ArrayList;
 public class Word {
 
 	private String inputString;
-	private String specialCharacters = "!\"# $%&'()*+,-./:;<=>?@[\\]^_`{}~|0123456789\t\n\r\f\b";
 
 	public Word(String term) {
 		inputString = term;
@@ -28,29 +25,52 @@ public class Word {
 	 * Returns true if word is spelled correctly
 	 *
 	 * @param dictionary
-	 *            ArrayList o words
+	 *            The dictionary to look the word up in
+	 * @return boolean Whether a word is real
+	 */
+	public boolean isWord(Dictionary dictionary) {
+		return isWord(dictionary, inputString, 0, inputString.length());
+	}
+
+	/**
+	 * Returns true if part of a sequence is spelled correctly. Whitespace,
+	 * punctuation and digits are ignored, so a word made only of them is
+	 * always correct.
+	 *
+	 * @param dictionary
+	 *            The dictionary to look the word up in
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
 	 * @return boolean Whether a word is real
 	 */
-	public boolean isWord(ArrayList<String> dictionary) {
-		String fixed = removeSpecial();
-		if (fixed.equals("")) {
-			return true;
-		} else {
-			return (dictionary.contains(fixed.toLowerCase()));
-		}
+	public static boolean isWord(Dictionary dictionary, CharSequence text,
+			int start, int end) {
+		return isWord(dictionary, null, text, start, end);
 	}
 
 	/**
-	 * Removes special characters from a string
+	 * Returns true if part of a sequence is spelled correctly, consulting a
+	 * cache of recent verdicts first
 	 *
-	 * @return String without any special characters
+	 * @param dictionary
+	 *            The dictionary to look the word up in
+	 * @param cache
+	 *            The cache of recent verdicts, or null
+	 * @param text
+	 *            The sequence holding the word
+	 * @param start
+	 *            The index of the first character of the word
+	 * @param end
+	 *            The index after the last character of the word
+	 * @return boolean Whether a word is real
 	 */
-	private String removeSpecial() {
-		String fixed = inputString;
-		fixed = fixed.trim();
-		for (char c : specialCharacters.toCharArray()) {
-			fixed = fixed.replace(String.valueOf(c), "");
-		}
-		return fixed;
+	public static boolean isWord(Dictionary dictionary, VerdictCache cache,
+			CharSequence text, int start, int end) {
+		return !WordTokenizer.hasLetters(text, start, end)
+				|| dictionary.contains(text, start, end, cache);
 	}
 }
@@ -0,0 +1,189 @@
+package spelling;
+
+/**
+ * Splits text into words in a single pass without creating Strings. Words are
+ * runs of characters between whitespace, handed out as start and end
+ * offsets. Punctuation and digits inside a word are ignored when it is looked
+ * up.
+ *
+ * @author Inderpreet
+ */
+public class WordTokenizer {
+
+	public static final byte SEPARATOR = 0;
+	public static final byte IGNORED = 1;
+	public static final byte LETTER = 2;
+
+	private static final String IGNORED_CHARACTERS = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{}~|0123456789\b";
+	private static final byte[] CLASSES = new byte[Character.MAX_VALUE + 1];
+
+	static {
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			if (Character.isWhitespace(c)) {
+				CLASSES[c] = SEPARATOR;
+			} else if (IGNORED_CHARACTERS.indexOf(c) >= 0) {
+				CLASSES[c] = IGNORED;
+			} else {
+				CLASSES[c] = LETTER;
+			}
+		}
+	}
+
+	private CharSequence text;
+	private int position;
+	private int limit;
+	private int start;
+	private int end;
+	private boolean hasLetters;
+
+	/**
+	 * Gets the class of a character
+	 *
+	 * @param c
+	 *            The character
+	 * @return SEPARATOR, IGNORED or LETTER
+	 */
+	public static byte classify(char c) {
+		return CLASSES[c];
+	}
+
+	/**
+	 * Returns true if part of a sequence has any characters that are looked
+	 * up in the dictionary
+	 *
+	 * @param text
+	 *            The sequence
+	 * @param start
+	 *            The index of the first character
+	 * @param end
+	 *            The index after the last character
+	 * @return Whether there are any letters
+	 */
+	public static boolean hasLetters(CharSequence text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (CLASSES[text.charAt(i)] == LETTER) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the lowercase letters of a word, as they are looked up in the
+	 * dictionary
+	 *
+	 * @param word
+	 *            The word
+	 * @return The letters of the word
+	 */
+	public static String normalize(CharSequence word) {
+		StringBuilder builder = new StringBuilder(word.length());
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (CLASSES[c] == LETTER) {
+				builder.append(Character.toLowerCase(c));
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Starts splitting part of a sequence
+	 *
+	 * @param text
+	 *            The sequence to split
+	 * @param start
+	 *            The index to start at
+	 * @param end
+	 *            The index to stop at
+	 * @return This tokenizer
+	 */
+	public WordTokenizer reset(CharSequence text, int start, int end) {
+		this.text = text;
+		position = start;
+		limit = end;
+		this.start = start;
+		this.end = start;
+		hasLetters = false;
+		return this;
+	}
+
+	/**
+	 * Moves to the next word
+	 *
+	 * @return Whether there was another word
+	 */
+	public boolean next() {
+		while (position < limit && CLASSES[text.charAt(position)] == SEPARATOR) {
+			position++;
+		}
+		if (position == limit) {
+			start = end = limit;
+			return false;
+		}
+		start = position;
+		hasLetters = false;
+		byte type;
+		while (position < limit
+				&& (type = CLASSES[text.charAt(position)]) != SEPARATOR) {
+			if (type == LETTER) {
+				hasLetters = true;
+			}
+			position++;
+		}
+		end = position;
+		return true;
+	}
+
+	/**
+	 * Gets the index of the first character of the current word
+	 *
+	 * @return The start of the word
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Gets the index after the last character of the current word
+	 *
+	 * @return The end of the word
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns true if the current word has any characters that are looked up
+	 * in the dictionary
+	 *
+	 * @return Whether the word has letters
+	 */
+	public boolean hasLetters() {
+		return hasLetters;
+	}
+
+	/**
+	 * Returns true if the current word is spelled correctly
+	 *
+	 * @param dictionary
+	 *            The dictionary to look the word up in
+	 * @return Whether the word is spelled correctly
+	 */
+	public boolean isWord(Dictionary dictionary) {
+		return isWord(dictionary, null);
+	}
+
+	/**
+	 * Returns true if the current word is spelled correctly
+	 *
+	 * @param dictionary
+	 *            The dictionary to look the word up in
+	 * @param cache
+	 *            The cache of recent verdicts, or null
+	 * @return Whether the word is spelled correctly
+	 */
+	public boolean isWord(Dictionary dictionary, VerdictCache cache) {
+		return !hasLetters || dictionary.contains(text, start, end, cache);
+	}
+}